@@ -0,0 +1,10 @@
+package com.sky.constant;
+
+/**
+ * 缓存名称常量类
+ */
+public class CacheConstant {
+
+    public static final String USER_DISH_CACHE = "user_dishCache";
+    public static final String SETMEAL_CACHE = "setmealCache";
+}
@@ -22,5 +22,16 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_CURSOR_INVALID = "分页游标无效";
+    public static final String ORDER_SUBMIT_BUSY = "下单人数过多，请稍后重试";
+    public static final String ORDER_SUBMIT_FAILED = "下单失败，请稍后重试";
+    public static final String ORDER_NUMBER_UNAVAILABLE = "下单服务暂不可用，请稍后重试";
+    public static final String UPSTREAM_BUSY = "系统繁忙，请稍后重试";
+    public static final String REPORT_RANGE_INVALID = "统计日期范围无效";
+    public static final String REPORT_EXPORT_BUSY = "导出任务过多，请稍后重试";
+    public static final String ORDER_PAY_TIMEOUT = "订单超时，自动取消";
+    public static final String ORDER_PAID_AFTER_CANCEL = "订单已取消后收到支付";
+    public static final String ORDER_USER_CANCEL_REFUND = "用户取消已支付订单";
+    public static final String DISH_SOLD_OUT = "商品今日已售罄";
     public static final String ALREADY_EXISTS = "已存在";
 }
@@ -0,0 +1,18 @@
+package com.sky.constant;
+
+/**
+ * 购物车redis key常量
+ */
+public class ShoppingCartConstant {
+
+    //各商品数量，field为商品标识，另有已加载标记field "_"
+    public static final String QUANTITY_KEY = "shopping_cart:%d:qty";
+    //各商品的名称、图片、价格等信息
+    public static final String ITEM_KEY = "shopping_cart:%d:item";
+    //有改动、待回写数据库的用户id集合
+    public static final String DIRTY_KEY = "shopping_cart:dirty";
+    //回写锁，同一用户同一时刻只由一个节点回写
+    public static final String FLUSH_LOCK_KEY = "shopping_cart:%d:flush_lock";
+    //购物车已从数据库加载的标记
+    public static final String LOADED_FIELD = "_";
+}
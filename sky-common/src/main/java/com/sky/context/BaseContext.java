@@ -1,19 +1,26 @@
 package com.sky.context;
 
+/**
+ * 当前登录id，保存在RequestContext中，随请求上下文一起传递和清理
+ */
 public class BaseContext {
 
-    public static ThreadLocal<Long> threadLocal = new ThreadLocal<>();
-
     public static void setCurrentId(Long id) {
-        threadLocal.set(id);
+        RequestContext context = RequestContext.current();
+        if (context == null)
+            context = RequestContext.create(null, null);
+        RequestContext.set(context.withCurrentId(id));
     }
 
     public static Long getCurrentId() {
-        return threadLocal.get();
+        RequestContext context = RequestContext.current();
+        return context == null ? null : context.getCurrentId();
     }
 
     public static void removeCurrentId() {
-        threadLocal.remove();
+        RequestContext context = RequestContext.current();
+        if (context != null)
+            RequestContext.set(context.withCurrentId(null));
     }
 
 }
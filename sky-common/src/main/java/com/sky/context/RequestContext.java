@@ -0,0 +1,146 @@
+package com.sky.context;
+
+import org.slf4j.MDC;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * 请求上下文：当前登录id、请求id、请求开始时间、租户
+ * 对象本身不可变，可在线程间安全传递；切换线程时用wrap包装任务，任务结束后恢复执行线程原有的上下文
+ */
+public final class RequestContext {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id"; //请求id的请求头，调用方未传时自动生成
+    public static final String TENANT_HEADER = "X-Tenant-Id"; //租户的请求头
+    public static final String MDC_REQUEST_ID = "requestId"; //日志中引用请求id的key
+    private static final int MAX_REQUEST_ID_LENGTH = 64; //调用方传入的请求id超过该长度时重新生成
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final String requestId;
+    private final Long currentId;
+    private final long startTime;
+    private final String tenant;
+
+    private RequestContext(String requestId, Long currentId, long startTime, String tenant) {
+        this.requestId = requestId;
+        this.currentId = currentId;
+        this.startTime = startTime;
+        this.tenant = tenant;
+    }
+
+    /**
+     * 创建新请求的上下文
+     * @param requestId 为空或过长时生成
+     * @param tenant
+     * @return
+     */
+    public static RequestContext create(String requestId, String tenant) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH)
+            requestId = UUID.randomUUID().toString().replace("-", "");
+        return new RequestContext(requestId, null, System.currentTimeMillis(), tenant);
+    }
+
+    /**
+     * 当前线程的上下文
+     * @return 不在请求中时为null
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 把上下文绑定到当前线程，返回的Scope关闭时恢复绑定前的上下文
+     * @param context
+     * @return
+     */
+    public static Scope attach(RequestContext context) {
+        RequestContext previous = CURRENT.get();
+        set(context);
+        return () -> set(previous);
+    }
+
+    /**
+     * 替换当前线程的上下文，仅供BaseContext使用
+     */
+    static void set(RequestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+            MDC.remove(MDC_REQUEST_ID);
+        } else {
+            CURRENT.set(context);
+            MDC.put(MDC_REQUEST_ID, context.requestId);
+        }
+    }
+
+    /**
+     * 包装任务，在执行线程上使用提交时的上下文
+     * @param task
+     * @return
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext captured = CURRENT.get();
+        if (captured == null)
+            return task;
+        return () -> {
+            try (Scope ignored = attach(captured)) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，在执行线程上使用提交时的上下文
+     * @param task
+     * @return
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        RequestContext captured = CURRENT.get();
+        if (captured == null)
+            return task;
+        return () -> {
+            try (Scope ignored = attach(captured)) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * 包装线程池，提交的任务自动携带提交线程的上下文，可直接用于CompletableFuture的*Async方法
+     * @param executor
+     * @return
+     */
+    public static Executor wrapExecutor(Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+
+    RequestContext withCurrentId(Long currentId) {
+        return new RequestContext(requestId, currentId, startTime, tenant);
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Long getCurrentId() {
+        return currentId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * 上下文的作用范围，关闭时恢复之前的上下文
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,10 @@
+package com.sky.exception;
+
+/**
+ * 外部接口调用繁忙
+ */
+public class UpstreamBusyException extends BaseException {
+    public UpstreamBusyException(String msg) {
+        super(msg);
+    }
+}
@@ -18,7 +18,6 @@ public class MyMetaObjectHandler implements MetaObjectHandler {
         this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
         this.strictInsertFill(metaObject, "createUser", Long.class, BaseContext.getCurrentId());
         this.strictInsertFill(metaObject, "updateUser", Long.class, BaseContext.getCurrentId());
-        BaseContext.removeCurrentId();//清理ThreadLocal
     }
 
     @Override
@@ -26,6 +25,5 @@ public class MyMetaObjectHandler implements MetaObjectHandler {
         log.info("更新填充时间和修改人id...");
         this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
         this.strictInsertFill(metaObject, "updateUser", Long.class, BaseContext.getCurrentId());
-        BaseContext.removeCurrentId();//清理ThreadLocal
     }
 }
\ No newline at end of file
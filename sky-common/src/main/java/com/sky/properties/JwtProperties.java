@@ -23,4 +23,10 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 已校验令牌的缓存，命中时不再重复验签
+     */
+    private int verifyCacheSize = 10000; //最多缓存的令牌数
+    private long verifyCacheSeconds = 600; //缓存时间上限，令牌更早过期时以令牌过期时间为准
+
 }
@@ -0,0 +1,40 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class MultiLevelCacheProperties {
+
+    public static final String COMPACT = "compact";
+
+    private String invalidationChannel = "sky:cache:invalidation"; //本地缓存失效广播的redis频道
+    private long evictCoalesceMs = 100; //管理端修改后合并清理缓存的时间窗口，0表示提交后立即清理
+    private Spec defaults = new Spec(); //未单独配置的缓存使用的默认规格
+    private Map<String, Spec> caches = new HashMap<>(); //按缓存名称单独配置
+    private String valueCodec = "compact"; //二级缓存redis值写入格式 compact紧凑编码 legacy原有格式，两种格式都可读取
+    private int compressThreshold = 1024; //紧凑编码超过该字节数时压缩，0表示不压缩
+    private int snapshotGzipThreshold = 512; //C端菜单快照超过该字节数时额外生成gzip版本，0表示不压缩
+
+    /**
+     * 获取指定缓存的规格
+     * @param cacheName
+     * @return
+     */
+    public Spec spec(String cacheName) {
+        return caches.getOrDefault(cacheName, defaults);
+    }
+
+    @Data
+    public static class Spec {
+        private long localMaxSize = 1000; //本地缓存最大条数
+        private long localTtlSeconds = 60; //本地缓存过期时间，兜底丢失的失效广播
+        private long remoteTtlSeconds = 1800; //redis缓存过期时间，0表示不过期
+    }
+}
@@ -0,0 +1,35 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.operate-log")
+@Data
+public class OperateLogProperties {
+
+    private int capacity = 8192; //环形队列容量，会向上取整为2的幂
+    private int batchSize = 200; //每批最多写入的日志条数
+    private long flushIntervalMs = 1000; //最长刷盘间隔，单位:ms
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP; //队列满时的处理策略
+    private double sampleWatermark = 0.75; //SAMPLE策略下开始采样的队列水位
+    private int sampleRate = 10; //SAMPLE策略下每N条保留1条
+    private long blockTimeoutMs = 1000; //BLOCK策略下最长等待时间，单位:ms
+    private CaptureMode captureMode = CaptureMode.FULL; //参数与返回值的默认记录方式
+    private int defaultSampleRate = 1; //默认采样率，每N次调用记录1次
+
+    /**
+     * 队列溢出策略 DROP直接丢弃 SAMPLE高水位时采样保留 BLOCK阻塞等待空位
+     */
+    public enum OverflowPolicy {
+        DROP, SAMPLE, BLOCK
+    }
+
+    /**
+     * 记录方式 FULL记录json内容(按字段长度截断) SHAPE只记录类型和大小
+     */
+    public enum CaptureMode {
+        FULL, SHAPE
+    }
+}
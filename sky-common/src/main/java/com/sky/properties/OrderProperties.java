@@ -0,0 +1,36 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    private int historyDetailLimit = 0; //历史订单列表中每个订单最多返回的明细条数，0表示不限制
+    private int cursorMaxPageSize = 100; //游标分页每页最多返回的订单数
+    private String submitMode = "direct"; //下单方式 direct逐单提交 batch组提交
+    private int batchSize = 50; //组提交每批最多的订单数
+    private long batchMaxWaitMs = 5; //组提交攒批最长等待时间，单位:ms
+    private int batchQueueCapacity = 2048; //组提交队列容量，队列满时拒绝下单
+    private long submitTimeoutMs = 5000; //组提交时请求等待入库结果的最长时间，单位:ms
+    private long workerId = -1; //订单号生成器节点id，范围0~1023，小于0时从redis租用
+    private long workerLeaseSeconds = 60; //从redis租用的节点id租期，单位:s
+    private String eventBus = "redis"; //订单事件广播方式 redis多节点 memory单节点
+    private String eventChannel = "order:events"; //订单事件的redis频道
+    private int sseBufferSize = 256; //每个推送连接最多积压的事件数，超出后改发RESYNC
+    private long sseTimeoutMs = 1800000; //推送连接超时时间，超时后客户端重连，单位:ms
+    private int sseMaxConnections = 200; //本节点最多的推送连接数
+    private int sseSenderThreads = 4; //推送发送线程数
+    private long sseHeartbeatMs = 15000; //推送心跳间隔，单位:ms
+    private String timeoutMode = "local"; //订单超时定时器 local进程内时间轮 redis多节点共享有序集合
+    private long paymentTimeoutMinutes = 15; //待付款超时自动取消时间，单位:min
+    private long deliveryTimeoutMinutes = 120; //下单后仍在派送中时自动完成的时间，单位:min
+    private long timeoutTickMs = 1000; //时间轮刻度，单位:ms
+    private long timeoutPollMs = 1000; //检查到期订单的间隔，单位:ms
+    private int timeoutBatchSize = 500; //每次条件更新的最多订单数
+    private long timeoutRebuildLockSeconds = 300; //redis模式下启动重建的互斥时间，单位:s
+    private long timeoutClaimSeconds = 60; //redis模式下取出的订单未确认处理完成时重新到期的时间，单位:s
+}
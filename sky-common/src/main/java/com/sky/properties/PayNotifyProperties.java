@@ -0,0 +1,16 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.pay-notify")
+@Data
+public class PayNotifyProperties {
+
+    private long doneTtlSeconds = 90000; //已处理通知的去重记录保留时间，覆盖微信24小时内的重试，单位:s
+    private long processingTtlSeconds = 300; //处理中标记的过期时间，处理节点宕机后可由重试接管，单位:s
+    private int bloomExpectedInsertions = 1000000; //本地布隆过滤器每代预计容纳的通知数
+    private double bloomFpp = 0.01; //本地布隆过滤器误判率
+}
@@ -0,0 +1,20 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    private long flushIntervalMs = 1000; //报表增量写入汇总表的间隔，单位:ms
+    private String rebuildCron = "0 30 3 * * ?"; //每日按明细重建汇总的时间
+    private int rebuildDays = 2; //每日重建最近几天(不含当天)的汇总，修正进程异常退出时丢失的增量
+    private long changedDayRebuildIntervalMs = 60000; //以前日期有变化时按明细重建该日期的间隔，单位:ms
+    private int maxRangeDays = 366; //报表查询最多跨越的天数
+    private int exportDays = 30; //导出运营数据报表覆盖的天数(截至昨天)
+    private int exportRowWindow = 100; //导出时内存中保留的行数，超出的行写入临时文件
+    private int maxConcurrentExports = 2; //同时进行的导出数，超出时拒绝
+}
@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shop")
+@Data
+public class ShopProperties {
+
+    private String statusChannel = "sky:shop:status"; //营业状态变更广播的redis频道
+    private long refreshIntervalMs = 30000; //定时从redis重新读取营业状态的间隔，兜底丢失的广播，单位:ms
+    private List<String> businessHours = new ArrayList<>(); //营业时段，如10:00-14:00，结束早于开始表示跨零点；为空时不限时段
+}
@@ -0,0 +1,17 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    private String store = "redis"; //购物车存储方式 redis/database
+    private long ttlSeconds = 604800; //redis中购物车的过期时间，单位:s，过期后从数据库重新加载
+    private long flushIntervalMs = 5000; //redis购物车回写数据库的间隔，单位:ms
+    private int flushBatchSize = 200; //每次回写最多处理的用户数
+    private long flushLockSeconds = 30; //单个用户回写锁的过期时间，单位:s，需大于一次回写的最长耗时
+}
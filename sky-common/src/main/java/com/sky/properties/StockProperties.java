@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.stock")
+@Data
+public class StockProperties {
+
+    private String mode = "redis"; //限量预占方式 redis多节点共享 local单节点内存计数
+    private int stripes = 8; //local模式每个菜品剩余份数的分段数
+    private long reconcileIntervalMs = 5000; //同步已售份数到数据库并刷新限量配置的间隔，单位:ms
+}
@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.upstream")
+@Data
+public class UpstreamProperties {
+
+    private int maxConcurrent = 64; //同时进行的外部接口调用上限
+    private int queueCapacity = 64; //等待调用的请求上限，超出时直接拒绝
+    private long asyncTimeoutMs = 15000; //异步请求的最长处理时间，单位:ms
+}
@@ -19,5 +19,7 @@ public class WeChatProperties {
     private String weChatPayCertFilePath; //平台证书
     private String notifyUrl; //支付成功的回调地址
     private String refundNotifyUrl; //退款成功的回调地址
+    private String apiBaseUrl = "https://api.weixin.qq.com"; //小程序接口地址，压测时可指向本地模拟服务
+    private String payBaseUrl = "https://api.mch.weixin.qq.com"; //微信支付接口地址，压测时可指向本地模拟服务
 
 }
@@ -0,0 +1,21 @@
+package com.sky.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 封装游标分页查询结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResult implements Serializable {
+    private List records; //当前页数据集合
+    private String nextCursor; //下一页游标，没有更多数据时为null
+    private boolean hasMore; //是否还有下一页
+    private Long total; //总记录数，未要求统计时为null
+}
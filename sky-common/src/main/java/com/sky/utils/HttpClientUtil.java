@@ -11,21 +11,72 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ * 所有请求共用一个连接池，保持长连接，避免每次请求都重新建立TCP和TLS连接
  */
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
+    static final int MAX_TOTAL = 200; //连接池最大连接数
+    static final int MAX_PER_ROUTE = 50; //每个目标主机最大连接数
+    static final int IDLE_EVICT_SEC = 30; //空闲超过该时间的连接被关闭
+    static final int VALIDATE_AFTER_INACTIVITY_MSEC = 2 * 1000; //空闲超过该时间的连接复用前先检查
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    static {
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MSEC);
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setDefaultRequestConfig(builderRequestConfig())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_EVICT_SEC, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 连接池使用情况
+     * @return
+     */
+    public static Map<String, Integer> poolStats() {
+        return poolStats(CONNECTION_MANAGER);
+    }
+
+    /**
+     * 连接池使用情况
+     * @param connectionManager
+     * @return
+     */
+    public static Map<String, Integer> poolStats(PoolingHttpClientConnectionManager connectionManager) {
+        PoolStats totalStats = connectionManager.getTotalStats();
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        stats.put("leased", totalStats.getLeased());
+        stats.put("available", totalStats.getAvailable());
+        stats.put("pending", totalStats.getPending());
+        stats.put("max", totalStats.getMax());
+        stats.put("routes", connectionManager.getRoutes().size());
+        return stats;
+    }
 
     /**
      * 发送GET方式请求
@@ -34,8 +85,8 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
 
         String result = "";
         CloseableHttpResponse response = null;
@@ -63,8 +114,9 @@ public class HttpClientUtil {
             e.printStackTrace();
         }finally {
             try {
-                response.close();
-                httpClient.close();
+                //只关闭响应，连接归还连接池
+                if (response != null)
+                    response.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -73,6 +125,17 @@ public class HttpClientUtil {
         return result;
     }
 
+    /**
+     * 在指定线程池中发送GET方式请求
+     * @param url
+     * @param paramMap
+     * @param executor
+     * @return
+     */
+    public static CompletableFuture<String> doGetAsync(String url, Map<String,String> paramMap, Executor executor){
+        return CompletableFuture.supplyAsync(() -> doGet(url, paramMap), executor);
+    }
+
     /**
      * 发送POST方式请求
      * @param url
@@ -81,8 +144,8 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -111,7 +174,8 @@ public class HttpClientUtil {
             throw e;
         } finally {
             try {
-                response.close();
+                if (response != null)
+                    response.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -128,8 +192,8 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        // 使用共享的Httpclient对象
+        CloseableHttpClient httpClient = HTTP_CLIENT;
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -161,7 +225,8 @@ public class HttpClientUtil {
             throw e;
         } finally {
             try {
-                response.close();
+                if (response != null)
+                    response.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -169,6 +234,23 @@ public class HttpClientUtil {
 
         return resultString;
     }
+    /**
+     * 在指定线程池中发送POST方式请求，请求体为json
+     * @param url
+     * @param paramMap
+     * @param executor
+     * @return
+     */
+    public static CompletableFuture<String> doPost4JsonAsync(String url, Map<String, String> paramMap, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return doPost4Json(url, paramMap);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
     private static RequestConfig builderRequestConfig() {
         return RequestConfig.custom()
                 .setConnectTimeout(TIMEOUT_MSEC)
@@ -2,8 +2,11 @@ package com.sky.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
@@ -46,13 +49,21 @@ public class JwtUtil {
      * @return
      */
     public static Claims parseJWT(String secretKey, String token) {
-        // 得到DefaultJwtParser
-        Claims claims = Jwts.parser()
-                // 设置签名的秘钥
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                // 设置需要解析的jwt
-                .parseClaimsJws(token).getBody();
-        return claims;
+        // 设置需要解析的jwt
+        return parser(secretKey).parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 创建绑定秘钥的解析器
+     * 解析器配置完成后解析过程不修改自身状态，可创建一次后多线程共用，避免每次请求重新构造秘钥和解析器
+     *
+     * @param secretKey jwt秘钥
+     * @return
+     */
+    public static JwtParser parser(String secretKey) {
+        SecretKeySpec signingKey = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
+        // 得到DefaultJwtParser，设置签名的秘钥
+        return Jwts.parser().setSigningKey(signingKey);
     }
 
 }
@@ -0,0 +1,68 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 趋势递增的64位id生成器
+ * 结构：1位符号 + 41位毫秒时间戳(相对EPOCH) + 10位节点id + 12位序列号
+ * 时间戳与序列号放在同一个AtomicLong中CAS更新，无锁；
+ * 同一毫秒序列号用完或时钟回拨时沿用逻辑时间继续递增，保证同一节点生成的id严格递增
+ */
+public class SnowflakeIdGenerator {
+
+    public static final long EPOCH = 1704038400000L; //2024-01-01 00:00:00 +08:00
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    private final long workerId;
+    private final LongSupplier clock; //毫秒时钟
+    //高位为相对时间戳，低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId) {
+        this(workerId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long workerId, LongSupplier clock) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID)
+            throw new IllegalArgumentException("workerId超出范围[0," + MAX_WORKER_ID + "]：" + workerId);
+        this.workerId = workerId;
+        this.clock = clock;
+    }
+
+    /**
+     * 生成下一个id
+     * @return
+     */
+    public long nextId() {
+        long current, next;
+        do {
+            current = state.get();
+            long now = clock.getAsLong() - EPOCH;
+            //时钟前进则序列号从0开始；否则在逻辑时间上加1，序列号溢出时自然进位到下一毫秒
+            next = now > (current >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : current + 1;
+        } while (!state.compareAndSet(current, next));
+
+        return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                | (workerId << SEQUENCE_BITS)
+                | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * 解析id中的生成时间(毫秒时间戳)
+     * @param id
+     * @return
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+}
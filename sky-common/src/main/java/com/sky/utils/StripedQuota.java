@@ -0,0 +1,92 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 分段的剩余份数，各段独立CAS扣减，不同线程优先扣自己那一段，减少对同一变量的争抢
+ * 每段都不会扣成负数，因此总数不会超卖；剩余很少时一次扣减可能跨多段，失败时归还已扣的部分
+ */
+public class StripedQuota {
+
+    private static final int PADDING = 16; //相邻段间隔16个int(64字节)，避免伪共享
+
+    private final AtomicIntegerArray cells;
+    private final int stripes;
+
+    /**
+     * @param remaining 初始剩余份数
+     * @param stripes 分段数
+     */
+    public StripedQuota(int remaining, int stripes) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicIntegerArray(this.stripes * PADDING);
+        int share = Math.max(0, remaining) / this.stripes;
+        int extra = Math.max(0, remaining) % this.stripes;
+        for (int i = 0; i < this.stripes; i++)
+            cells.set(i * PADDING, share + (i < extra ? 1 : 0));
+    }
+
+    /**
+     * 扣减份数
+     * @param n
+     * @return 剩余不足时返回false且不扣减
+     */
+    public boolean tryAcquire(int n) {
+        if (n <= 0)
+            return true;
+        int start = probe();
+        int need = n;
+        int[] taken = null;
+        for (int i = 0; i < stripes && need > 0; i++) {
+            int index = ((start + i) % stripes) * PADDING;
+            int current;
+            int take;
+            do {
+                current = cells.get(index);
+                take = Math.min(current, need);
+                if (take <= 0)
+                    break;
+            } while (!cells.compareAndSet(index, current, current - take));
+            if (take > 0) {
+                need -= take;
+                if (need > 0) {
+                    if (taken == null)
+                        taken = new int[stripes];
+                    taken[(start + i) % stripes] += take;
+                }
+            }
+        }
+        if (need == 0)
+            return true;
+        //各段合计不足，归还本次已扣的部分
+        if (taken != null)
+            for (int i = 0; i < stripes; i++)
+                if (taken[i] > 0)
+                    cells.addAndGet(i * PADDING, taken[i]);
+        return false;
+    }
+
+    /**
+     * 归还份数
+     * @param n
+     */
+    public void release(int n) {
+        if (n > 0)
+            cells.addAndGet(probe() * PADDING, n);
+    }
+
+    /**
+     * 剩余份数，并发修改时为近似值
+     * @return
+     */
+    public int remaining() {
+        int sum = 0;
+        for (int i = 0; i < stripes; i++)
+            sum += cells.get(i * PADDING);
+        return sum;
+    }
+
+    private int probe() {
+        return (int) (Thread.currentThread().getId() % stripes);
+    }
+}
@@ -0,0 +1,168 @@
+package com.sky.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层时间轮，按long键保存到期时间，添加、取消都是O(1)
+ * 每层64个槽，下层转满一圈时把上层当前槽的定时器重新分配到下层，6层可覆盖2^36个刻度；
+ * 到期时间超出范围的按最大范围放置，届时重新分配。线程安全，所有操作互斥
+ */
+public class TimingWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMs;
+    private final Node[][] wheels = new Node[LEVELS][SLOTS];
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private long nextTick; //下一个待处理的刻度
+
+    /**
+     * @param tickMs 刻度，单位:ms，到期时间按刻度向上取整，不会提前到期
+     * @param startMs 起始时间
+     */
+    public TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        this.nextTick = startMs / tickMs;
+        for (Node[] wheel : wheels)
+            for (int i = 0; i < SLOTS; i++)
+                wheel[i] = Node.sentinel();
+    }
+
+    /**
+     * 添加定时器，键已存在时替换原到期时间
+     * @param key
+     * @param deadlineMs 到期时间
+     */
+    public synchronized void add(long key, long deadlineMs) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            node = new Node(key);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+        }
+        node.expires = (deadlineMs + tickMs - 1) / tickMs;
+        place(node);
+    }
+
+    /**
+     * 取消定时器
+     * @param key
+     * @return 是否存在未到期的定时器
+     */
+    public synchronized boolean cancel(long key) {
+        Node node = nodes.remove(key);
+        if (node == null)
+            return false;
+        node.unlink();
+        return true;
+    }
+
+    /**
+     * 推进到指定时间，取出期间到期的键
+     * @param nowMs
+     * @return 到期的键，按到期先后排列
+     */
+    public synchronized List<Long> advance(long nowMs) {
+        long nowTick = nowMs / tickMs;
+        List<Long> expired = new ArrayList<>();
+        while (nextTick <= nowTick) {
+            int index = (int) (nextTick & MASK);
+            //最低层转完一圈，逐层把上层当前槽分配下来
+            for (int level = 1; level < LEVELS && index == 0; level++) {
+                index = (int) ((nextTick >>> (BITS * level)) & MASK);
+                cascade(wheels[level][index]);
+            }
+            Node head = wheels[0][(int) (nextTick & MASK)];
+            for (Node node = head.next; node != head; ) {
+                Node next = node.next;
+                node.unlink();
+                nodes.remove(node.key);
+                expired.add(node.key);
+                node = next;
+            }
+            nextTick++;
+        }
+        return expired;
+    }
+
+    /**
+     * 未到期的定时器数量
+     * @return
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void cascade(Node head) {
+        for (Node node = head.next; node != head; ) {
+            Node next = node.next;
+            node.unlink();
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node node) {
+        long delta = node.expires - nextTick;
+        Node head;
+        if (delta < 0) {
+            //已到期，放在下一个处理的槽
+            head = wheels[0][(int) (nextTick & MASK)];
+        } else {
+            if (delta > MAX_DELTA) {
+                delta = MAX_DELTA;
+            }
+            long expires = nextTick + delta;
+            int level = 0;
+            while (delta >= 1L << (BITS * (level + 1)))
+                level++;
+            head = wheels[level][(int) ((expires >>> (BITS * level)) & MASK)];
+        }
+        node.linkBefore(head);
+    }
+
+    /**
+     * 槽内双向循环链表的节点，每个槽有一个哨兵节点
+     */
+    private static final class Node {
+        private final long key;
+        private long expires;
+        private Node prev;
+        private Node next;
+
+        Node(long key) {
+            this.key = key;
+        }
+
+        static Node sentinel() {
+            Node node = new Node(0);
+            node.prev = node;
+            node.next = node;
+            return node;
+        }
+
+        void linkBefore(Node head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
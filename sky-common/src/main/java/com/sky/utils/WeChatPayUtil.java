@@ -7,19 +7,24 @@ import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.PrivateKey;
 import java.security.Signature;
@@ -28,6 +33,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 微信支付工具类
@@ -35,41 +45,109 @@ import java.util.List;
 @Component
 public class WeChatPayUtil {
 
-    //微信支付下单接口地址
-    public static final String JSAPI = "https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi";
+    //微信支付下单接口路径，主机地址取自sky.wechat.pay-base-url
+    public static final String JSAPI = "/v3/pay/transactions/jsapi";
 
-    //申请退款接口地址
-    public static final String REFUNDS = "https://api.mch.weixin.qq.com/v3/refund/domestic/refunds";
+    //申请退款接口路径
+    public static final String REFUNDS = "/v3/refund/domestic/refunds";
+
+    static final int TIMEOUT_MSEC = 5 * 1000; //建立连接、等待响应、从连接池获取连接的超时时间
+    static final int MAX_TOTAL = 100; //连接池最大连接数
+    static final int MAX_PER_ROUTE = 50; //每个目标主机最大连接数
+    static final int IDLE_EVICT_SEC = 30; //空闲超过该时间的连接被关闭
+    static final int RELOAD_CHECK_INTERVAL_MSEC = 60 * 1000; //检查私钥、证书文件是否变化的间隔
 
     @Autowired
     private WeChatProperties weChatProperties;
 
+    //所有客户端共用的连接池，重新加载证书时不重建，已建立的连接继续复用
+    private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    //共享连接池时HttpClientBuilder不会启动空闲连接清理线程，由连接池自己的清理线程关闭过期和空闲连接
+    private final IdleConnectionEvictor connectionEvictor = new IdleConnectionEvictor(connectionManager, IDLE_EVICT_SEC, TimeUnit.SECONDS);
+    private volatile Credentials credentials;
+    private volatile long nextReloadCheck;
+
+    @PostConstruct
+    public void init() {
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        connectionEvictor.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (credentials != null)
+            credentials.httpClient.close();
+        connectionEvictor.shutdown();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * 连接池使用情况
+     * @return
+     */
+    public Map<String, Integer> poolStats() {
+        return HttpClientUtil.poolStats(connectionManager);
+    }
+
     /**
      * 获取调用微信接口的客户端工具对象
+     * 私钥和平台证书只在首次使用和文件变化时加载
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
-        try {
-            //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
+    private CloseableHttpClient getClient() throws IOException {
+        return getCredentials().httpClient;
+    }
+
+    private Credentials getCredentials() throws IOException {
+        Credentials current = credentials;
+        long now = System.currentTimeMillis();
+        if (current != null && now < nextReloadCheck)
+            return current;
+
+        synchronized (this) {
+            current = credentials;
+            if (current != null && now < nextReloadCheck)
+                return current;
+            File keyFile = new File(weChatProperties.getPrivateKeyFilePath());
+            File certFile = new File(weChatProperties.getWeChatPayCertFilePath());
+            if (current == null || current.keyModified != keyFile.lastModified() || current.certModified != certFile.lastModified()) {
+                Credentials previous = current;
+                current = loadCredentials(keyFile, certFile);
+                credentials = current;
+                //连接池为共享，关闭旧客户端不会关闭连接池，进行中的请求不受影响
+                if (previous != null)
+                    previous.httpClient.close();
+            }
+            nextReloadCheck = now + RELOAD_CHECK_INTERVAL_MSEC;
+            return current;
+        }
+    }
+
+    private Credentials loadCredentials(File keyFile, File certFile) throws IOException {
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        //merchantPrivateKey商户API私钥
+        try (FileInputStream keyInput = new FileInputStream(keyFile);
+             FileInputStream certInput = new FileInputStream(certFile)) {
+            merchantPrivateKey = PemUtil.loadPrivateKey(keyInput);
             //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+            x509Certificate = PemUtil.loadCertificate(certInput);
         }
+        //wechatPayCertificates微信支付平台证书列表
+        List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(wechatPayCertificates)
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                //未设置超时时，微信接口无响应会一直占用调用方的隔离舱名额
+                .setDefaultRequestConfig(builderRequestConfig())
+                .build();
+        return new Credentials(merchantPrivateKey, httpClient, keyFile.lastModified(), certFile.lastModified());
     }
 
     /**
@@ -88,13 +166,9 @@ public class WeChatPayUtil {
         httpPost.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
         httpPost.setEntity(new StringEntity(body, "UTF-8"));
 
-        CloseableHttpResponse response = httpClient.execute(httpPost);
-        try {
-            String bodyAsString = EntityUtils.toString(response.getEntity());
-            return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
+        //只关闭响应，连接归还连接池
+        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+            return EntityUtils.toString(response.getEntity());
         }
     }
 
@@ -112,13 +186,8 @@ public class WeChatPayUtil {
         httpGet.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        try {
-            String bodyAsString = EntityUtils.toString(response.getEntity());
-            return bodyAsString;
-        } finally {
-            httpClient.close();
-            response.close();
+        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+            return EntityUtils.toString(response.getEntity());
         }
     }
 
@@ -151,7 +220,7 @@ public class WeChatPayUtil {
         jsonObject.put("payer", payer);
 
         String body = jsonObject.toJSONString();
-        return post(JSAPI, body);
+        return post(weChatProperties.getPayBaseUrl() + JSAPI, body);
     }
 
     /**
@@ -188,7 +257,7 @@ public class WeChatPayUtil {
             byte[] message = signMessage.getBytes();
 
             Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            signature.initSign(getCredentials().merchantPrivateKey);
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
@@ -205,6 +274,26 @@ public class WeChatPayUtil {
         return jsonObject;
     }
 
+    /**
+     * 在指定线程池中发起小程序支付
+     *
+     * @param orderNum    商户订单号
+     * @param total       金额，单位 元
+     * @param description 商品描述
+     * @param openid      微信用户的openid
+     * @param executor
+     * @return
+     */
+    public CompletableFuture<JSONObject> payAsync(String orderNum, BigDecimal total, String description, String openid, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pay(orderNum, total, description, openid);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
     /**
      * 申请退款
      *
@@ -230,6 +319,30 @@ public class WeChatPayUtil {
         String body = jsonObject.toJSONString();
 
         //调用申请退款接口
-        return post(REFUNDS, body);
+        return post(weChatProperties.getPayBaseUrl() + REFUNDS, body);
+    }
+
+    private static RequestConfig builderRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(TIMEOUT_MSEC)
+                .setConnectionRequestTimeout(TIMEOUT_MSEC)
+                .setSocketTimeout(TIMEOUT_MSEC).build();
+    }
+
+    /**
+     * 已加载的商户私钥及对应的客户端
+     */
+    private static final class Credentials {
+        private final PrivateKey merchantPrivateKey;
+        private final CloseableHttpClient httpClient;
+        private final long keyModified;
+        private final long certModified;
+
+        Credentials(PrivateKey merchantPrivateKey, CloseableHttpClient httpClient, long keyModified, long certModified) {
+            this.merchantPrivateKey = merchantPrivateKey;
+            this.httpClient = httpClient;
+            this.keyModified = keyModified;
+            this.certModified = certModified;
+        }
     }
 }
@@ -23,6 +23,8 @@ public class DishDTO implements Serializable {
     private String description;
     //0 停售 1 起售
     private Integer status;
+    //每日限量份数，0表示不限量，不传时不修改
+    private Integer dailyQuota;
     //口味
     private List<DishFlavor> flavors = new ArrayList<>();
 
@@ -0,0 +1,36 @@
+package com.sky.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Data
+public class OrdersCursorQueryDTO implements Serializable {
+
+    //上一页返回的游标，首页不传
+    private String cursor;
+
+    private int pageSize;
+
+    //订单号前缀
+    private String number;
+
+    //手机号前缀
+    private String phone;
+
+    private Integer status;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime beginTime;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime endTime;
+
+    private Long userId;
+
+    //是否需要统计总记录数，默认不统计
+    private boolean withTotal;
+
+}
@@ -44,6 +44,9 @@ public class Dish implements Serializable {
     //0 停售 1 起售
     private Integer status;
 
+    //每日限量份数，0表示不限量
+    private Integer dailyQuota;
+
     //创建时间
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createTime;
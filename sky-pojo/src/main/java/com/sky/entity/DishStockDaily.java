@@ -0,0 +1,21 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 菜品每日已售份数
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DishStockDaily {
+    private LocalDate stockDate; //日期
+    private Long dishId; //菜品id
+    private Integer sold; //已预占份数
+}
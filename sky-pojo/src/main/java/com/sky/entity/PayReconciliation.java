@@ -0,0 +1,35 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 支付对账记录，已取消的已付款订单退款时登记
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayReconciliation {
+
+    /**
+     * 处理状态 0待退款 1已发起退款 2退款失败待人工处理
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer REFUNDING = 1;
+    public static final Integer REFUND_FAILED = 2;
+
+    private Long id;
+    private String orderNumber; //商户订单号
+    private String transactionId; //微信支付交易号
+    private Integer orderStatus; //收到通知时的订单状态
+    private String reason; //登记原因
+    private Integer status; //处理状态
+    private String remark; //处理说明
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,21 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 报表商品日销量
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportDishDaily {
+    private LocalDate reportDate; //日期
+    private String name; //商品名称
+    private Integer number; //销量
+}
@@ -0,0 +1,25 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 报表小时汇总，也用于表示待累加的增量和按天汇总的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportHourly {
+    private LocalDate reportDate; //日期
+    private Integer reportHour; //小时，按天汇总时为null
+    private BigDecimal turnover; //营业额
+    private Integer orderCount; //订单数
+    private Integer validOrderCount; //有效订单数
+    private Integer newUserCount; //新增用户数
+}
@@ -30,6 +30,8 @@ public class DishVO implements Serializable {
     private String description;
     //0 停售 1 起售
     private Integer status;
+    //每日限量份数，0表示不限量
+    private Integer dailyQuota;
     //菜品关联的口味
     private List<DishFlavor> flavors = new ArrayList<>();
 
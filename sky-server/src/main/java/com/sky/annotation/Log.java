@@ -8,4 +8,21 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.TYPE, ElementType.METHOD})
 public @interface Log {
-}
\ No newline at end of file
+
+    /**
+     * 参数与返回值的记录方式，DEFAULT表示使用sky.operate-log.capture-mode
+     */
+    Capture capture() default Capture.DEFAULT;
+
+    /**
+     * 采样率，每N次调用记录1次，0表示使用sky.operate-log.default-sample-rate
+     */
+    int sampleRate() default 0;
+
+    /**
+     * FULL记录json内容(超出字段长度即截断) SHAPE只记录类型和大小
+     */
+    enum Capture {
+        DEFAULT, FULL, SHAPE
+    }
+}
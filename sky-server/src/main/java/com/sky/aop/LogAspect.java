@@ -1,17 +1,24 @@
 package com.sky.aop;
 
-import com.alibaba.fastjson.JSONObject;
+import com.sky.annotation.Log;
 import com.sky.entity.OperateLog;
-import com.sky.mapper.OperateLogMapper;
+import com.sky.properties.OperateLogProperties;
+import com.sky.properties.OperateLogProperties.CaptureMode;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.stereotype.Component;
+import java.lang.reflect.Method;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.sky.context.BaseContext.getCurrentId;
 
@@ -20,7 +27,12 @@ import static com.sky.context.BaseContext.getCurrentId;
 @Aspect //AOP类
 public class LogAspect {
     @Autowired
-    private OperateLogMapper operateLogMapper;
+    private OperateLogWriter operateLogWriter;
+    @Autowired
+    private OperateLogProperties operateLogProperties;
+
+    //每个接口方法的记录策略，首次调用时解析注解后缓存
+    private final Map<Method, EndpointPolicy> policies = new ConcurrentHashMap<>();
 
     @Pointcut("@within(com.sky.annotation.Log) || @annotation(com.sky.annotation.Log)")
     public void log_pt() {
@@ -28,40 +40,78 @@ public class LogAspect {
 
     @Around("log_pt()") //切入点表达式
     public Object recordTime(ProceedingJoinPoint joinPoint) throws Throwable {
-        log.info("开始记录日志···");
-        operateLogMapper.create_table_operate_log();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        EndpointPolicy policy = policies.computeIfAbsent(method, m -> resolvePolicy(m, joinPoint.getTarget().getClass()));
+        if (!policy.sample())//未被采样，不做任何采集
+            return joinPoint.proceed();
 
-        //获取请求头中的jwt令牌
         String operateUser = String.valueOf(getCurrentId()); // 操作人ID - 当前登录员工ID
-        log.info("当前操作员工ID: {}", operateUser);
-
         LocalDateTime operateTime = LocalDateTime.now();
-        log.info("当前操作时间: {}", operateTime);
-
         String className = joinPoint.getTarget().getClass().getName();
-        log.info("当前操作类名: {}", className);
-
-        String methodName = joinPoint.getSignature().getName();
-        log.info("当前操作方法名: {}", methodName);
-
-        String methodParams = Arrays.toString(joinPoint.getArgs());
-        log.info("当前操作方法参数: {}", methodParams);
+        String methodName = method.getName();
+        String methodParams = LogCapture.args(joinPoint.getArgs(), policy.shapeOnly, LogCapture.METHOD_PARAMS_LIMIT);
 
         long begin = System.currentTimeMillis();//记录开始时间
         Object result = joinPoint.proceed();//调用原始目标方法运行
+
+        //异步接口在结果完成后再记录，耗时包含等待外部接口的时间
+        if (result instanceof CompletableFuture) {
+            ((CompletableFuture<?>) result).whenComplete((value, ex) -> {
+                if (ex == null)
+                    record(policy, operateUser, operateTime, className, methodName, methodParams, value, begin);
+            });
+            return result;
+        }
+
+        record(policy, operateUser, operateTime, className, methodName, methodParams, result, begin);
+        return result;
+    }
+
+    private void record(EndpointPolicy policy, String operateUser, LocalDateTime operateTime, String className,
+                        String methodName, String methodParams, Object result, long begin) {
         long end = System.currentTimeMillis();//记录结束时间
 
-        String returnValue = JSONObject.toJSONString(result);//方法返回值，转为json字符串存入数据库
+        String returnValue = LogCapture.value(result, policy.shapeOnly, LogCapture.RETURN_VALUE_LIMIT);//方法返回值，超出字段长度即停止序列化
 
         Long costTime = end - begin;
-        log.info(joinPoint.getSignature()+"方法执行耗时: {}ms", costTime);//计算方法执行耗时
+        log.debug("{}.{}方法执行耗时: {}ms", className, methodName, costTime);//计算方法执行耗时
 
-        //记录操作日志
+        //记录操作日志，放入队列由后台线程批量入库
         OperateLog operateLog = new OperateLog(null,operateUser,operateTime,className,methodName,methodParams,returnValue,costTime);
-        operateLogMapper.insert(operateLog);
-        log.info("AOP记录操作日志: {}" , operateLog);
+        operateLogWriter.submit(operateLog);
+    }
 
+    /**
+     * 方法上的@Log优先于类上的@Log，未指定的项使用全局配置
+     */
+    private EndpointPolicy resolvePolicy(Method method, Class<?> targetClass) {
+        Log annotation = AnnotatedElementUtils.findMergedAnnotation(method, Log.class);
+        if (annotation == null)
+            annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, Log.class);
+
+        Log.Capture capture = annotation == null ? Log.Capture.DEFAULT : annotation.capture();
+        boolean shapeOnly = capture == Log.Capture.DEFAULT
+                ? operateLogProperties.getCaptureMode() == CaptureMode.SHAPE
+                : capture == Log.Capture.SHAPE;
+
+        int sampleRate = annotation == null || annotation.sampleRate() <= 0
+                ? operateLogProperties.getDefaultSampleRate()
+                : annotation.sampleRate();
+        return new EndpointPolicy(shapeOnly, Math.max(1, sampleRate));
+    }
 
-        return result;
+    private static final class EndpointPolicy {
+        private final boolean shapeOnly;
+        private final int sampleRate;
+        private final AtomicLong counter = new AtomicLong();
+
+        EndpointPolicy(boolean shapeOnly, int sampleRate) {
+            this.shapeOnly = shapeOnly;
+            this.sampleRate = sampleRate;
+        }
+
+        boolean sample() {
+            return sampleRate == 1 || counter.getAndIncrement() % sampleRate == 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package com.sky.aop;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.result.PageResult;
+import com.sky.result.Result;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 操作日志的参数/返回值采集
+ * 复用线程私有的定长缓冲区，写满字段长度后立即中止序列化，不再完整生成json字符串
+ */
+final class LogCapture {
+
+    static final int METHOD_PARAMS_LIMIT = 1000; //method_params字段长度
+    static final int RETURN_VALUE_LIMIT = 2000; //return_value字段长度
+
+    private static final ThreadLocal<BoundedWriter> WRITER = ThreadLocal.withInitial(() -> new BoundedWriter(RETURN_VALUE_LIMIT));
+
+    private LogCapture() {
+    }
+
+    /**
+     * 方法参数，FULL模式下为各参数toString，超出limit截断
+     */
+    static String args(Object[] args, boolean shapeOnly, int limit) {
+        BoundedWriter writer = WRITER.get().reset(limit);
+        try {
+            writer.write('[');
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0)
+                    writer.write(", ");
+                if (shapeOnly)
+                    writeShape(writer, args[i]);
+                else
+                    writer.write(String.valueOf(args[i]));
+            }
+            writer.write(']');
+        } catch (IOException ignored) {
+            //已写满，保留截断前的内容
+        }
+        return writer.result();
+    }
+
+    /**
+     * 返回值，FULL模式下为流式json，超出limit即中止序列化
+     */
+    static String value(Object value, boolean shapeOnly, int limit) {
+        BoundedWriter writer = WRITER.get().reset(limit);
+        try {
+            if (shapeOnly)
+                writeShape(writer, value);
+            else
+                JSON.writeJSONString(writer, value);
+        } catch (Exception ignored) {
+            //写满后fastjson会把中止异常包装为JSONException，保留截断前的内容
+        }
+        return writer.result();
+    }
+
+    /**
+     * 只记录类型和大小，例如 Result(code=1,data=ArrayList<DishVO>(size=12))
+     */
+    private static void writeShape(BoundedWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Enum || value instanceof Character) {
+            writer.write(value.toString());
+        } else if (value instanceof CharSequence) {
+            writer.write("String(len=");
+            writer.write(Integer.toString(((CharSequence) value).length()));
+            writer.write(')');
+        } else if (value instanceof Result) {
+            Result<?> result = (Result<?>) value;
+            writer.write("Result(code=");
+            writer.write(String.valueOf(result.getCode()));
+            writer.write(",data=");
+            writeShape(writer, result.getData());
+            writer.write(')');
+        } else if (value instanceof PageResult) {
+            PageResult pageResult = (PageResult) value;
+            writer.write("PageResult(total=");
+            writer.write(Long.toString(pageResult.getTotal()));
+            writer.write(",records=");
+            writeShape(writer, pageResult.getRecords());
+            writer.write(')');
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            writer.write(value.getClass().getSimpleName());
+            if (!collection.isEmpty()) {
+                Object first = collection.iterator().next();
+                writer.write('<');
+                writer.write(first == null ? "null" : first.getClass().getSimpleName());
+                writer.write('>');
+            }
+            writer.write("(size=");
+            writer.write(Integer.toString(collection.size()));
+            writer.write(')');
+        } else if (value instanceof Map) {
+            writer.write(value.getClass().getSimpleName());
+            writer.write("(size=");
+            writer.write(Integer.toString(((Map<?, ?>) value).size()));
+            writer.write(')');
+        } else if (value.getClass().isArray()) {
+            writer.write(value.getClass().getComponentType().getSimpleName());
+            writer.write("[](length=");
+            writer.write(Integer.toString(Array.getLength(value)));
+            writer.write(')');
+        } else {
+            writer.write(value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 定长字符缓冲区，写满后抛出一次无栈的中止异常，之后的写入直接忽略
+     */
+    private static final class BoundedWriter extends Writer {
+
+        private static final IOException LIMIT_REACHED = new LimitReachedException();
+
+        private final char[] buf;
+        private int count;
+        private int limit;
+        private boolean truncated;
+
+        BoundedWriter(int capacity) {
+            this.buf = new char[capacity];
+        }
+
+        BoundedWriter reset(int limit) {
+            this.count = 0;
+            this.limit = Math.min(limit, buf.length);
+            this.truncated = false;
+            return this;
+        }
+
+        String result() {
+            return new String(buf, 0, count);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (count >= limit) {
+                overflow();
+                return;
+            }
+            buf[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int room = limit - count;
+            if (len > room) {
+                System.arraycopy(cbuf, off, buf, count, room);
+                count = limit;
+                overflow();
+                return;
+            }
+            System.arraycopy(cbuf, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int room = limit - count;
+            if (len > room) {
+                str.getChars(off, off + room, buf, count);
+                count = limit;
+                overflow();
+                return;
+            }
+            str.getChars(off, off + len, buf, count);
+            count += len;
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            write(str, 0, str.length());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void overflow() throws IOException {
+            if (!truncated) {
+                truncated = true;
+                throw LIMIT_REACHED;
+            }
+        }
+    }
+
+    private static final class LimitReachedException extends IOException {
+
+        LimitReachedException() {
+            super("operate log value reached column limit");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sky.aop;
+
+import com.sky.entity.OperateLog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界无锁环形队列，多个请求线程写入，后台写库线程读取
+ * 每个槽位带序号，生产者/消费者通过CAS抢占游标，不使用任何锁
+ */
+class OperateLogRingBuffer {
+
+    private final int mask;
+    private final OperateLog[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(); //下一个写入位置
+    private final AtomicLong head = new AtomicLong(); //下一个读取位置
+
+    OperateLogRingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.mask = size - 1;
+        this.slots = new OperateLog[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * 写入一条日志
+     * @param operateLog
+     * @return 队列已满返回false
+     */
+    boolean offer(OperateLog operateLog) {
+        long pos = tail.get();
+        for (; ; ) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = operateLog;
+                    sequences.set(index, pos + 1);//发布槽位，消费者可见
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;//槽位尚未被消费，队列已满
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出一条日志
+     * @return 队列为空返回null
+     */
+    OperateLog poll() {
+        long pos = head.get();
+        for (; ; ) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    OperateLog operateLog = slots[index];
+                    slots[index] = null;
+                    sequences.set(index, pos + mask + 1);//归还槽位给下一圈的生产者
+                    return operateLog;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,184 @@
+package com.sky.aop;
+
+import com.sky.entity.OperateLog;
+import com.sky.mapper.OperateLogMapper;
+import com.sky.properties.OperateLogProperties;
+import com.sky.properties.OperateLogProperties.OverflowPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 操作日志异步批量写入器
+ * 请求线程只负责把日志放入环形队列，后台线程按条数或时间攒批后多行insert入库
+ */
+@Component
+@Slf4j
+public class OperateLogWriter {
+
+    //operate_log表各字段长度，超长部分截断，避免整批写入失败
+    private static final int OPERATE_USER_LENGTH = 30;
+    private static final int CLASS_NAME_LENGTH = 100;
+    private static final int METHOD_NAME_LENGTH = 100;
+    private static final int METHOD_PARAMS_LENGTH = 1000;
+    private static final int RETURN_VALUE_LENGTH = 2000;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Autowired
+    private OperateLogMapper operateLogMapper;
+    @Autowired
+    private OperateLogProperties operateLogProperties;
+
+    private OperateLogRingBuffer ringBuffer;
+    private Thread worker;
+    private volatile boolean running;
+
+    private final LongAdder accepted = new LongAdder(); //入队条数
+    private final LongAdder dropped = new LongAdder(); //队列满被丢弃的条数
+    private final LongAdder sampledOut = new LongAdder(); //高水位采样被跳过的条数
+    private final LongAdder written = new LongAdder(); //成功入库条数
+    private final LongAdder failed = new LongAdder(); //入库失败条数
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        //建表语句只在启动时执行一次
+        try {
+            operateLogMapper.create_table_operate_log();
+        } catch (Exception e) {
+            log.error("创建操作日志表失败：{}", e.getMessage());
+        }
+
+        ringBuffer = new OperateLogRingBuffer(operateLogProperties.getCapacity());
+        running = true;
+        worker = new Thread(this::drainLoop, "operate-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("操作日志异步写入器已启动，队列容量：{}，溢出策略：{}", ringBuffer.capacity(), operateLogProperties.getOverflowPolicy());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(worker);
+        worker.join(TimeUnit.SECONDS.toMillis(5));//等待剩余日志写完
+    }
+
+    /**
+     * 提交一条操作日志，不会访问数据库
+     * @param operateLog
+     */
+    public void submit(OperateLog operateLog) {
+        OverflowPolicy policy = operateLogProperties.getOverflowPolicy();
+
+        if (policy == OverflowPolicy.SAMPLE
+                && ringBuffer.size() >= ringBuffer.capacity() * operateLogProperties.getSampleWatermark()
+                && sampleCounter.getAndIncrement() % operateLogProperties.getSampleRate() != 0) {
+            sampledOut.increment();//高水位时每sampleRate条只保留1条
+            return;
+        }
+
+        truncate(operateLog);
+
+        if (ringBuffer.offer(operateLog)) {
+            accepted.increment();
+            return;
+        }
+
+        if (policy == OverflowPolicy.BLOCK && offerBlocking(operateLog)) {
+            accepted.increment();
+            return;
+        }
+        dropped.increment();
+    }
+
+    /**
+     * 队列状态与计数器
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", (long) ringBuffer.size());
+        stats.put("capacity", (long) ringBuffer.capacity());
+        stats.put("accepted", accepted.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("sampledOut", sampledOut.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    private boolean offerBlocking(OperateLog operateLog) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(operateLogProperties.getBlockTimeoutMs());
+        while (running && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (ringBuffer.offer(operateLog))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 后台线程：攒满batchSize条或距本批第一条超过flushInterval即写库
+     */
+    private void drainLoop() {
+        int batchSize = Math.max(1, operateLogProperties.getBatchSize());
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(operateLogProperties.getFlushIntervalMs());
+        List<OperateLog> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+
+        while (running || ringBuffer.size() > 0) {
+            OperateLog operateLog;
+            while (batch.size() < batchSize && (operateLog = ringBuffer.poll()) != null) {
+                if (batch.isEmpty())
+                    batchStart = System.nanoTime();
+                batch.add(operateLog);
+            }
+
+            if (batch.size() >= batchSize
+                    || (!batch.isEmpty() && (System.nanoTime() - batchStart >= flushIntervalNanos || !running))) {
+                flush(batch);
+                batch.clear();
+                continue;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        if (!batch.isEmpty())
+            flush(batch);
+    }
+
+    private void flush(List<OperateLog> batch) {
+        try {
+            operateLogMapper.insertBatch(batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            failed.add(batch.size());
+            log.error("批量写入操作日志失败，条数：{}，原因：{}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static void truncate(OperateLog operateLog) {
+        operateLog.setOperateUser(cut(operateLog.getOperateUser(), OPERATE_USER_LENGTH));
+        operateLog.setClassName(cut(operateLog.getClassName(), CLASS_NAME_LENGTH));
+        operateLog.setMethodName(cut(operateLog.getMethodName(), METHOD_NAME_LENGTH));
+        operateLog.setMethodParams(cut(operateLog.getMethodParams(), METHOD_PARAMS_LENGTH));
+        operateLog.setReturnValue(cut(operateLog.getReturnValue(), RETURN_VALUE_LENGTH));
+    }
+
+    private static String cut(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
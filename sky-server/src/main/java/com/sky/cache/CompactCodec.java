@@ -0,0 +1,461 @@
+package com.sky.cache;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制编码，用于redis中缓存的菜品、套餐等对象
+ * 类按注册顺序用编号代替类名，字段按名称排序后依次写入，不写字段名；整数用变长编码，重复的字符串只写一次，超过阈值的内容再压缩。
+ * 头部：魔数、格式版本、标志位、注册类结构的指纹；类结构变化后指纹不同，旧数据按未命中处理
+ */
+public class CompactCodec {
+
+    public static final byte MAGIC = (byte) 0xC5;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 7;
+    private static final int MAX_POOLED_BUFFER = 1 << 20; //超过该大小的缓冲用完后不保留
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte DECIMAL = 7;
+    private static final byte DATE_TIME = 8;
+    private static final byte DATE = 9;
+    private static final byte LIST = 10;
+    private static final byte BEAN = 11;
+    private static final byte STRING_REF = 12; //引用本次编码中已出现过的字符串
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(() -> new Buffer(256));
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final BeanSchema[] schemas;
+    private final Map<Class<?>, BeanSchema> schemaByClass = new HashMap<>();
+    private final int fingerprint;
+    private final int compressThreshold;
+
+    /**
+     * @param beanClasses 可编码的对象类型，编号即顺序，只能在末尾追加
+     * @param compressThreshold 编码后超过该字节数时压缩，0表示不压缩
+     */
+    public CompactCodec(List<Class<?>> beanClasses, int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        this.schemas = new BeanSchema[beanClasses.size()];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < beanClasses.size(); i++) {
+            BeanSchema schema = new BeanSchema(i, beanClasses.get(i));
+            schemas[i] = schema;
+            schemaByClass.put(schema.type, schema);
+            crc.update(schema.describe().getBytes(StandardCharsets.UTF_8));
+        }
+        this.fingerprint = (int) crc.getValue();
+    }
+
+    /**
+     * 是否为本编码的数据
+     * @param bytes
+     * @return
+     */
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_SIZE && bytes[0] == MAGIC;
+    }
+
+    /**
+     * 编码
+     * @param value
+     * @return
+     * @throws IllegalArgumentException 包含不支持的类型
+     */
+    public byte[] encode(Object value) {
+        Buffer buffer = BUFFERS.get();
+        buffer.reset();
+        buffer.skip(HEADER_SIZE);
+        writeValue(buffer, value);
+
+        int length = buffer.size - HEADER_SIZE;
+        byte[] result;
+        if (compressThreshold > 0 && length > compressThreshold) {
+            result = deflate(buffer.bytes, HEADER_SIZE, length);
+            result[2] = FLAG_DEFLATE;
+        } else {
+            result = Arrays.copyOf(buffer.bytes, buffer.size);
+            result[2] = 0;
+        }
+        result[0] = MAGIC;
+        result[1] = VERSION;
+        writeInt(result, 3, fingerprint);
+        BUFFERS.set(buffer.bytes.length > MAX_POOLED_BUFFER ? new Buffer(256) : buffer);
+        return result;
+    }
+
+    /**
+     * 解码
+     * @param bytes
+     * @return 格式版本或类结构不一致时返回null
+     */
+    public Object decode(byte[] bytes) {
+        if (!isCompact(bytes) || bytes[1] != VERSION || readInt(bytes, 3) != fingerprint)
+            return null;
+        Input input;
+        if ((bytes[2] & FLAG_DEFLATE) != 0) {
+            Input header = new Input(bytes, HEADER_SIZE);
+            int rawLength = header.readVarInt();
+            input = new Input(inflate(bytes, header.position, rawLength), 0);
+        } else {
+            input = new Input(bytes, HEADER_SIZE);
+        }
+        return readValue(input);
+    }
+
+    private void writeValue(Buffer out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.write(INT);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof String) {
+            Integer index = out.strings.putIfAbsent((String) value, out.strings.size());
+            if (index != null) {
+                out.write(STRING_REF);
+                out.writeVarLong(index);
+            } else {
+                out.write(STRING);
+                out.writeString((String) value);
+            }
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.write(DECIMAL);
+            out.writeVarLong(zigZag(decimal.scale()));
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            out.writeVarLong(unscaled.length);
+            out.write(unscaled, 0, unscaled.length);
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime time = (LocalDateTime) value;
+            out.write(DATE_TIME);
+            out.writeVarLong(zigZag(time.toEpochSecond(ZoneOffset.UTC)));
+            out.writeVarLong(time.getNano());
+        } else if (value instanceof LocalDate) {
+            out.write(DATE);
+            out.writeVarLong(zigZag(((LocalDate) value).toEpochDay()));
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            out.writeVarLong(list.size());
+            for (Object element : list)
+                writeValue(out, element);
+        } else {
+            BeanSchema schema = schemaByClass.get(value.getClass());
+            if (schema == null)
+                throw new IllegalArgumentException("不支持紧凑编码的类型：" + value.getClass().getName());
+            out.write(BEAN);
+            out.writeVarLong(schema.id);
+            for (Field field : schema.fields)
+                writeValue(out, schema.get(field, value));
+        }
+    }
+
+    private Object readValue(Input in) {
+        byte tag = in.read();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) unZigZag(in.readVarLong());
+            case LONG:
+                return unZigZag(in.readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case STRING: {
+                String value = in.readString();
+                in.strings.add(value);
+                return value;
+            }
+            case STRING_REF:
+                return in.strings.get(in.readVarInt());
+            case DECIMAL: {
+                int scale = (int) unZigZag(in.readVarLong());
+                byte[] unscaled = in.readBytes(in.readVarInt());
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            case DATE_TIME: {
+                long seconds = unZigZag(in.readVarLong());
+                return LocalDateTime.ofEpochSecond(seconds, in.readVarInt(), ZoneOffset.UTC);
+            }
+            case DATE:
+                return LocalDate.ofEpochDay(unZigZag(in.readVarLong()));
+            case LIST: {
+                int size = in.readVarInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(readValue(in));
+                return list;
+            }
+            case BEAN: {
+                BeanSchema schema = schemas[in.readVarInt()];
+                Object bean = schema.newInstance();
+                for (Field field : schema.fields)
+                    schema.set(field, bean, readValue(in));
+                return bean;
+            }
+            default:
+                throw new IllegalStateException("无法识别的类型标记：" + tag);
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes, int offset, int length) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(bytes, offset, length);
+        deflater.finish();
+        Buffer out = new Buffer(HEADER_SIZE + 5 + length / 2);
+        out.skip(HEADER_SIZE);
+        out.writeVarLong(length);
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, 0, n);
+        }
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int rawLength) {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(bytes, offset, bytes.length - offset);
+        byte[] raw = new byte[rawLength];
+        try {
+            int n = 0;
+            while (n < rawLength && !inflater.finished())
+                n += inflater.inflate(raw, n, rawLength - n);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩数据损坏", e);
+        }
+        return raw;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * 对象类型的结构：无参构造和按名称排序的实例字段
+     */
+    private static final class BeanSchema {
+        private final int id;
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        BeanSchema(int id, Class<?> type) {
+            this.id = id;
+            this.type = type;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(type.getName() + "缺少无参构造方法", e);
+            }
+            List<Field> list = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass())
+                for (Field field : c.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                        field.setAccessible(true);
+                        list.add(field);
+                    }
+            list.sort(Comparator.comparing(Field::getName));
+            this.fields = list.toArray(new Field[0]);
+        }
+
+        String describe() {
+            StringBuilder sb = new StringBuilder(type.getName());
+            for (Field field : fields)
+                sb.append(';').append(field.getName()).append(':').append(field.getType().getName());
+            return sb.toString();
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Object get(Field field, Object bean) {
+            try {
+                return field.get(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void set(Field field, Object bean, Object value) {
+            if (value == null && field.getType().isPrimitive())
+                return;
+            try {
+                field.set(bean, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 可扩容的写缓冲，按线程复用
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int size;
+        private final Map<String, Integer> strings = new HashMap<>(); //已写入的字符串及其序号
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void reset() {
+            size = 0;
+            strings.clear();
+        }
+
+        void skip(int n) {
+            ensure(n);
+            size += n;
+        }
+
+        void write(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void write(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8)
+                bytes[size++] = (byte) (value >>> shift);
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            write(utf8, 0, utf8.length);
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int position;
+        private final List<String> strings = new ArrayList<>(); //已读出的字符串，按序号引用
+
+        Input(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        byte read() {
+            return bytes[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++)
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            return value;
+        }
+
+        byte[] readBytes(int length) {
+            byte[] result = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return result;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
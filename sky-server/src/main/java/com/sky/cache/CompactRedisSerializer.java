@@ -0,0 +1,56 @@
+package com.sky.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * redis值序列化：写入使用紧凑编码，读取同时兼容原有格式，便于不停机切换
+ * 紧凑编码不支持的值仍按原有格式写入；writeCompact为false时全部按原有格式写入，用于回退
+ */
+@Slf4j
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private final CompactCodec codec;
+    private final RedisSerializer<Object> legacy;
+    private final boolean writeCompact;
+
+    /**
+     * @param codec 紧凑编码
+     * @param legacy 原有格式的序列化
+     * @param writeCompact 是否按紧凑编码写入
+     */
+    public CompactRedisSerializer(CompactCodec codec, RedisSerializer<Object> legacy, boolean writeCompact) {
+        this.codec = codec;
+        this.legacy = legacy;
+        this.writeCompact = writeCompact;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null)
+            return new byte[0];
+        if (writeCompact) {
+            try {
+                return codec.encode(value);
+            } catch (IllegalArgumentException e) {
+                log.debug("改用原有格式序列化：{}", e.getMessage());
+            }
+        }
+        return legacy.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0)
+            return null;
+        if (!CompactCodec.isCompact(bytes))
+            return legacy.deserialize(bytes);
+        try {
+            //类结构已变化的旧数据返回null，按未命中处理
+            return codec.decode(bytes);
+        } catch (RuntimeException e) {
+            throw new SerializationException("紧凑编码数据解析失败", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.sky.cache;
+
+import com.sky.constant.CacheConstant;
+import com.sky.properties.MultiLevelCacheProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * C端菜单缓存的精确失效
+ * 管理端写操作登记受影响的分类，事务提交后才清理对应key；短时间内的多次修改合并为一次清理
+ */
+@Component
+@Slf4j
+public class MenuCacheInvalidator {
+
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private MultiLevelCacheProperties cacheProperties;
+
+    private final Set<CacheKey> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "menu-cache-invalidator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * 登记某分类下的菜品发生变化
+     * @param categoryId
+     */
+    public void dishCategoryChanged(Long categoryId) {
+        mark(new CacheKey(CacheConstant.USER_DISH_CACHE, categoryId));
+    }
+
+    /**
+     * 登记某分类下的套餐发生变化
+     * @param categoryId
+     */
+    public void setmealCategoryChanged(Long categoryId) {
+        mark(new CacheKey(CacheConstant.SETMEAL_CACHE, categoryId));
+    }
+
+    private void mark(CacheKey cacheKey) {
+        if (cacheKey.getCategoryId() == null)
+            return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(Collections.singleton(cacheKey));//不在事务中，直接排队
+            return;
+        }
+
+        //同一事务登记的key先暂存，提交后统一排队，回滚则丢弃
+        @SuppressWarnings("unchecked")
+        Set<CacheKey> keys = (Set<CacheKey>) TransactionSynchronizationManager.getResource(this);
+        if (keys == null) {
+            Set<CacheKey> transactionKeys = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, transactionKeys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(transactionKeys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MenuCacheInvalidator.this);
+                }
+            });
+            keys = transactionKeys;
+        }
+        keys.add(cacheKey);
+    }
+
+    private void enqueue(Collection<CacheKey> keys) {
+        pending.addAll(keys);
+        long coalesceMs = cacheProperties.getEvictCoalesceMs();
+        if (coalesceMs <= 0) {
+            flush();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true))
+            scheduler.schedule(this::flush, coalesceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        flushScheduled.set(false);//先复位，之后登记的key由下一次调度处理
+        Iterator<CacheKey> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            CacheKey cacheKey = iterator.next();
+            iterator.remove();
+            try {
+                Cache cache = cacheManager.getCache(cacheKey.getCacheName());
+                if (cache != null)
+                    cache.evict(cacheKey.getCategoryId());
+                log.debug("清理菜单缓存：{}::{}", cacheKey.getCacheName(), cacheKey.getCategoryId());
+            } catch (Exception e) {
+                log.error("清理菜单缓存失败：{}::{}，原因：{}", cacheKey.getCacheName(), cacheKey.getCategoryId(), e.getMessage());
+            }
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class CacheKey {
+        private String cacheName;
+        private Long categoryId;
+    }
+}
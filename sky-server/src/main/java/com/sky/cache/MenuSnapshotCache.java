@@ -0,0 +1,234 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.MultiLevelCacheProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * C端菜单的响应快照：按分类保存序列化好的json字节、gzip版本和ETag，请求时直接写出字节
+ * 数据仍取自二级缓存，对应缓存项失效(本节点清理或收到其他节点广播)时同步丢弃快照，下次请求重新生成
+ */
+@Component
+public class MenuSnapshotCache {
+
+    private static final String GZIP = "gzip";
+
+    @Autowired
+    private MultiLevelCacheManager cacheManager;
+    @Autowired
+    private MultiLevelCacheProperties cacheProperties;
+
+    private final ObjectMapper objectMapper = new JacksonObjectMapper(); //与消息转换器一致，保证输出相同
+    private final ConcurrentMap<String, com.github.benmanes.caffeine.cache.Cache<String, Snapshot>> snapshots = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder gzipped = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        cacheManager.addInvalidationListener(this::invalidate);
+    }
+
+    /**
+     * 写出某分类的菜单快照，请求的If-None-Match与快照一致时返回304
+     * @param cacheName 数据所在的二级缓存
+     * @param categoryId
+     * @param loader 缓存未命中时查询数据库，返回值即响应体
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    public void write(String cacheName, Long categoryId, Callable<?> loader,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Snapshot snapshot = get(cacheName, categoryId, loader);
+
+        response.setHeader(HttpHeaders.ETAG, snapshot.etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");//客户端每次带ETag回来校验
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(request.getHeaders(HttpHeaders.IF_NONE_MATCH), snapshot.etag)) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = snapshot.json;
+        if (snapshot.gzip != null && acceptsGzip(request.getHeaders(HttpHeaders.ACCEPT_ENCODING))) {
+            body = snapshot.gzip;
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            gzipped.increment();
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("snapshots", snapshots.values().stream().mapToLong(com.github.benmanes.caffeine.cache.Cache::estimatedSize).sum());
+        stats.put("hits", hits.sum());
+        stats.put("builds", builds.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("gzipped", gzipped.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Snapshot get(String cacheName, Long categoryId, Callable<?> loader) {
+        if (categoryId == null)//没有分类id时不缓存，每次直接生成
+            return build(call(loader));
+        com.github.benmanes.caffeine.cache.Cache<String, Snapshot> cache = snapshots(cacheName);
+        Snapshot snapshot = cache.getIfPresent(categoryId.toString());
+        if (snapshot != null) {
+            hits.increment();
+            return snapshot;
+        }
+        //生成前记录数据缓存的失效代数，生成期间发生失效时快照可能基于旧值
+        MultiLevelCache dataCache = (MultiLevelCache) cacheManager.getCache(cacheName);
+        long generation = dataCache.generation();
+        //同一分类只生成一次，数据先查二级缓存
+        snapshot = cache.get(categoryId.toString(), k -> build(dataCache.get(categoryId, loader)));
+        //先放入再检查，失效在两步之间发生时也能撤销；本次请求仍使用该快照，下次请求重新生成
+        if (dataCache.generation() != generation) {
+            cache.asMap().remove(categoryId.toString(), snapshot);
+            invalidations.increment();
+        }
+        return snapshot;
+    }
+
+    //快照容量和过期时间与该缓存的L1一致，丢失失效广播时由过期兜底
+    private com.github.benmanes.caffeine.cache.Cache<String, Snapshot> snapshots(String cacheName) {
+        return snapshots.computeIfAbsent(cacheName, name -> {
+            MultiLevelCacheProperties.Spec spec = cacheProperties.spec(name);
+            return Caffeine.newBuilder()
+                    .maximumSize(spec.getLocalMaxSize())
+                    .expireAfterWrite(spec.getLocalTtlSeconds(), TimeUnit.SECONDS)
+                    .build();
+        });
+    }
+
+    private void invalidate(String cacheName, String key) {
+        com.github.benmanes.caffeine.cache.Cache<String, Snapshot> cache = snapshots.get(cacheName);
+        if (cache == null)
+            return;
+        if (key == null)
+            cache.invalidateAll();
+        else
+            cache.invalidate(key);
+        invalidations.increment();
+    }
+
+    private Snapshot build(Object value) {
+        builds.increment();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            String etag = "W/\"" + DigestUtils.md5DigestAsHex(json) + "\"";//同一内容的原文和gzip版本共用弱ETag
+            int threshold = cacheProperties.getSnapshotGzipThreshold();
+            byte[] gzip = threshold > 0 && json.length > threshold ? gzip(json) : null;
+            return new Snapshot(json, gzip != null && gzip.length < json.length ? gzip : null, etag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        //快照只在菜单变化后生成一次，使用最高压缩级别
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static Object call(Callable<?> loader) {
+        try {
+            return loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //If-None-Match可能包含多个ETag或*，按弱比较忽略W/前缀
+    private static boolean matches(Enumeration<String> headers, String etag) {
+        String opaque = etag.substring(2);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String tag : headers.nextElement().split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/"))
+                    tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(opaque))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    //Accept-Encoding中包含gzip或*，且q值不为0
+    private static boolean acceptsGzip(Enumeration<String> headers) {
+        while (headers != null && headers.hasMoreElements()) {
+            for (String coding : headers.nextElement().split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim();
+                if (!GZIP.equalsIgnoreCase(name) && !"*".equals(name))
+                    continue;
+                boolean rejected = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=") && param.substring(2).trim().matches("0(\\.0*)?"))
+                        rejected = true;
+                }
+                if (!rejected)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Snapshot {
+        private final byte[] json;
+        private final byte[] gzip; //压缩后不变小或未达到阈值时为null
+        private final String etag;
+
+        Snapshot(byte[] json, byte[] gzip, String etag) {
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = etag;
+        }
+    }
+}
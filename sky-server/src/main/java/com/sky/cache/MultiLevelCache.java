@@ -0,0 +1,175 @@
+package com.sky.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二级缓存：L1为进程内Caffeine，L2为redis
+ * 读取先查L1，未命中再查L2并回填L1；失效时同时清理两级，并广播通知其他节点清理L1
+ */
+public class MultiLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private final Cache remote;
+    private final MultiLevelCacheManager cacheManager;
+    private final AtomicLong generation = new AtomicLong(); //每次失效加一，用于识别读取L2期间发生的失效
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    MultiLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> local,
+                    Cache remote, MultiLevelCacheManager cacheManager) {
+        super(true);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object localKey = localKey(key);
+        Object storeValue = local.getIfPresent(localKey);
+        if (storeValue != null) {
+            localHits.increment();
+            return storeValue;
+        }
+        localMisses.increment();
+
+        long readGeneration = generation.get();
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        storeValue = toStoreValue(wrapper.get());
+        local.put(localKey, storeValue);//回填L1
+        //读取L2期间发生过失效，读到的可能是旧值，撤销回填；先回填再检查，失效在两步之间发生时也能撤销
+        if (generation.get() != readGeneration)
+            local.asMap().remove(localKey, storeValue);
+        return storeValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object storeValue = lookup(key);
+        if (storeValue == null)//同一节点同一key只加载一次
+            storeValue = local.get(localKey(key), k -> load(key, valueLoader));
+        return (T) fromStoreValue(storeValue);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), toStoreValue(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.put(localKey(key), toStoreValue(existing == null ? value : existing.get()));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        Object localKey = localKey(key);
+        remote.evict(key);
+        generation.incrementAndGet();//L2清理之后再加一，之后读到的L2一定是新值
+        local.invalidate(localKey);
+        evictions.increment();
+        cacheManager.localInvalidated(name, localKey.toString());
+        cacheManager.publishInvalidation(name, localKey.toString());
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        generation.incrementAndGet();
+        local.invalidateAll();
+        evictions.increment();
+        cacheManager.localInvalidated(name, null);
+        cacheManager.publishInvalidation(name, null);
+    }
+
+    /**
+     * 收到其他节点的失效广播，只清理本地L1
+     * @param key 为null时清空
+     */
+    void invalidateLocal(String key) {
+        generation.incrementAndGet();
+        if (key == null)
+            local.invalidateAll();
+        else
+            local.invalidate(key);
+        remoteInvalidations.increment();
+        cacheManager.localInvalidated(name, key);
+    }
+
+    /**
+     * 当前失效代数，用于识别读取期间是否发生过失效
+     * @return
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 各级命中统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("localHits", localHits.sum());
+        stats.put("localMisses", localMisses.sum());
+        stats.put("remoteHits", remoteHits.sum());
+        stats.put("remoteMisses", remoteMisses.sum());
+        stats.put("localSize", local.estimatedSize());
+        stats.put("evictions", evictions.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        return stats;
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        ValueWrapper wrapper = remote.get(key);//等待期间可能已被其他节点写入
+        if (wrapper != null)
+            return toStoreValue(wrapper.get());
+
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        remote.put(key, value);
+        return toStoreValue(value);
+    }
+
+    //L1与redis一样按字符串区分key，保证跨节点广播的key能对应上
+    private static Object localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
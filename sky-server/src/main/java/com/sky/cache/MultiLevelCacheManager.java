@@ -0,0 +1,161 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.MultiLevelCacheProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 二级缓存管理器，同时监听其他节点发出的L1失效广播
+ */
+@Slf4j
+public class MultiLevelCacheManager implements CacheManager, MessageListener {
+
+    private final String nodeId = UUID.randomUUID().toString(); //当前节点标识，忽略自己发出的广播
+    private final ConcurrentMap<String, MultiLevelCache> caches = new ConcurrentHashMap<>();
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MultiLevelCacheProperties cacheProperties;
+    private final List<BiConsumer<String, String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param redisConnectionFactory
+     * @param stringRedisTemplate
+     * @param cacheProperties
+     * @param valueSerializer L2中缓存值的序列化方式
+     */
+    public MultiLevelCacheManager(RedisConnectionFactory redisConnectionFactory,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  MultiLevelCacheProperties cacheProperties,
+                                  RedisSerializer<Object> valueSerializer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheProperties = cacheProperties;
+
+        Map<String, RedisCacheConfiguration> configurations = new LinkedHashMap<>();
+        cacheProperties.getCaches().forEach((name, spec) -> configurations.put(name, redisCacheConfiguration(spec, valueSerializer)));
+        this.redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(redisCacheConfiguration(cacheProperties.getDefaults(), valueSerializer))
+                .withInitialCacheConfigurations(configurations)
+                .build();
+        this.redisCacheManager.afterPropertiesSet();
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 各缓存的命中统计
+     * @return
+     */
+    public Map<String, Map<String, Long>> stats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
+    /**
+     * 注册本节点L1失效的监听，本节点清理和收到其他节点广播时都会回调，用于同步清理由缓存值派生的数据
+     * @param listener 参数为缓存名称和key，key为null表示清空整个缓存
+     */
+    public void addInvalidationListener(BiConsumer<String, String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    void localInvalidated(String cacheName, String key) {
+        for (BiConsumer<String, String> listener : invalidationListeners) {
+            try {
+                listener.accept(cacheName, key);
+            } catch (Exception e) {
+                log.warn("缓存失效回调失败：{}::{}，原因：{}", cacheName, key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 广播L1失效消息，广播失败只影响其他节点L1的新鲜度，由L1过期时间兜底
+     * @param cacheName
+     * @param key 为null表示清空整个缓存
+     */
+    void publishInvalidation(String cacheName, String key) {
+        try {
+            String message = JSON.toJSONString(new InvalidationMessage(nodeId, cacheName, key));
+            stringRedisTemplate.convertAndSend(cacheProperties.getInvalidationChannel(), message);
+        } catch (Exception e) {
+            log.warn("缓存失效广播发送失败：{}::{}，原因：{}", cacheName, key, e.getMessage());
+        }
+    }
+
+    /**
+     * 处理其他节点的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        InvalidationMessage invalidation = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8), InvalidationMessage.class);
+        if (invalidation == null || nodeId.equals(invalidation.getNodeId()))
+            return;
+        MultiLevelCache cache = caches.get(invalidation.getCacheName());
+        if (cache != null)
+            cache.invalidateLocal(invalidation.getKey());
+    }
+
+    private MultiLevelCache createCache(String name) {
+        MultiLevelCacheProperties.Spec spec = cacheProperties.spec(name);
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumSize(spec.getLocalMaxSize())
+                .expireAfterWrite(spec.getLocalTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+        log.info("创建二级缓存：{}，本地容量：{}，本地过期：{}s，redis过期：{}s",
+                name, spec.getLocalMaxSize(), spec.getLocalTtlSeconds(), spec.getRemoteTtlSeconds());
+        return new MultiLevelCache(name, local, redisCacheManager.getCache(name), this);
+    }
+
+    private static RedisCacheConfiguration redisCacheConfiguration(MultiLevelCacheProperties.Spec spec,
+                                                                   RedisSerializer<Object> valueSerializer) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer))
+                .entryTtl(Duration.ofSeconds(spec.getRemoteTtlSeconds()));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class InvalidationMessage {
+        private String nodeId;
+        private String cacheName;
+        private String key;
+    }
+}
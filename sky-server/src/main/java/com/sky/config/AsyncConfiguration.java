@@ -0,0 +1,22 @@
+package com.sky.config;
+
+import com.sky.context.RequestContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 异步任务配置
+ */
+@Configuration
+public class AsyncConfiguration {
+
+    /**
+     * spring自动配置的线程池(applicationTaskExecutor)会自动应用该装饰器，任务执行时携带提交线程的请求上下文
+     * @return
+     */
+    @Bean
+    public TaskDecorator requestContextTaskDecorator() {
+        return RequestContext::wrap;
+    }
+}
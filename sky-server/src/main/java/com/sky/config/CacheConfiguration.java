@@ -0,0 +1,65 @@
+package com.sky.config;
+
+import com.sky.cache.CompactCodec;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.MultiLevelCacheManager;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.properties.MultiLevelCacheProperties;
+import com.sky.result.Result;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+import com.sky.vo.SetmealVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Arrays;
+
+/**
+ * 配置类，用于创建二级缓存管理器(Caffeine + redis)
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    /**
+     * 二级缓存L2值的紧凑编码，登记可编码的对象类型，新类型只能追加在末尾
+     * 类结构变化后旧数据按未命中处理，因此只用于可从数据库重新加载的缓存，不用于redisTemplate保存的业务数据
+     * @param multiLevelCacheProperties
+     * @return
+     */
+    @Bean
+    public CompactCodec redisValueCodec(MultiLevelCacheProperties multiLevelCacheProperties){
+        return new CompactCodec(Arrays.asList(
+                Result.class, DishVO.class, DishFlavor.class, Dish.class, Setmeal.class,
+                SetmealVO.class, SetmealDish.class, DishItemVO.class, Category.class),
+                multiLevelCacheProperties.getCompressThreshold());
+    }
+
+    @Bean
+    public MultiLevelCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                               StringRedisTemplate stringRedisTemplate,
+                                               MultiLevelCacheProperties multiLevelCacheProperties,
+                                               RedisMessageListenerContainer redisMessageListenerContainer,
+                                               CompactCodec redisValueCodec) {
+        log.info("开始创建二级缓存管理器：{}", multiLevelCacheProperties);
+        //L2原先使用默认的jdk序列化，改为紧凑编码并兼容读取jdk格式
+        CompactRedisSerializer valueSerializer = new CompactRedisSerializer(redisValueCodec,
+                RedisSerializer.java(getClass().getClassLoader()),
+                MultiLevelCacheProperties.COMPACT.equals(multiLevelCacheProperties.getValueCodec()));
+        MultiLevelCacheManager cacheManager = new MultiLevelCacheManager(redisConnectionFactory, stringRedisTemplate,
+                multiLevelCacheProperties, valueSerializer);
+        //订阅其他节点的L1失效广播
+        redisMessageListenerContainer.addMessageListener(cacheManager, new ChannelTopic(multiLevelCacheProperties.getInvalidationChannel()));
+        return cacheManager;
+    }
+}
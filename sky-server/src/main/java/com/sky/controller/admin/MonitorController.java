@@ -0,0 +1,172 @@
+package com.sky.controller.admin;
+
+import com.sky.aop.OperateLogWriter;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.cache.MultiLevelCacheManager;
+import com.sky.order.OrderEventHub;
+import com.sky.order.OrderSubmitBatcher;
+import com.sky.order.OrderTimeoutProcessor;
+import com.sky.order.PayNotifyDeduplicator;
+import com.sky.report.ReportRollupCollector;
+import com.sky.result.Result;
+import com.sky.stock.DishStockService;
+import com.sky.upstream.UpstreamBulkhead;
+import com.sky.utils.HttpClientUtil;
+import com.sky.utils.WeChatPayUtil;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行监控
+ */
+@RestController
+@RequestMapping("/admin/monitor")
+@Api(tags = "运行监控接口")
+@Slf4j
+public class MonitorController {
+
+    @Autowired
+    private OperateLogWriter operateLogWriter;
+    @Autowired
+    private MultiLevelCacheManager cacheManager;
+    @Autowired(required = false)
+    private OrderSubmitBatcher orderSubmitBatcher;
+    @Autowired
+    private PayNotifyDeduplicator payNotifyDeduplicator;
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private UpstreamBulkhead upstreamBulkhead;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+    @Autowired
+    private OrderEventHub orderEventHub;
+    @Autowired
+    private OrderTimeoutProcessor orderTimeoutProcessor;
+    @Autowired
+    private DishStockService dishStockService;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
+
+    /**
+     * 操作日志队列状态
+     * @return
+     */
+    @GetMapping("/operateLog")
+    @ApiOperation("操作日志队列状态")
+    public Result<Map<String, Long>> operateLog() {
+        return Result.success(operateLogWriter.stats());
+    }
+
+    /**
+     * 二级缓存各级命中统计
+     * @return
+     */
+    @GetMapping("/cache")
+    @ApiOperation("二级缓存命中统计")
+    public Result<Map<String, Map<String, Long>>> cache() {
+        return Result.success(cacheManager.stats());
+    }
+
+    /**
+     * 下单组提交状态，未开启组提交时返回空
+     * @return
+     */
+    @GetMapping("/orderSubmit")
+    @ApiOperation("下单组提交状态")
+    public Result<Map<String, Long>> orderSubmit() {
+        return Result.success(orderSubmitBatcher == null ? Collections.emptyMap() : orderSubmitBatcher.stats());
+    }
+
+    /**
+     * 支付回调去重统计
+     * @return
+     */
+    @GetMapping("/payNotify")
+    @ApiOperation("支付回调去重统计")
+    public Result<Map<String, Long>> payNotify() {
+        return Result.success(payNotifyDeduplicator.stats());
+    }
+
+    /**
+     * 调用微信接口的连接池使用情况
+     * @return
+     */
+    @GetMapping("/httpPool")
+    @ApiOperation("外部接口连接池使用情况")
+    public Result<Map<String, Map<String, Integer>>> httpPool() {
+        Map<String, Map<String, Integer>> stats = new LinkedHashMap<>();
+        stats.put("wechatApi", HttpClientUtil.poolStats());
+        stats.put("wechatPay", weChatPayUtil.poolStats());
+        return Result.success(stats);
+    }
+
+    /**
+     * 外部接口隔离舱使用情况
+     * @return
+     */
+    @GetMapping("/upstream")
+    @ApiOperation("外部接口隔离舱使用情况")
+    public Result<Map<String, Long>> upstream() {
+        return Result.success(upstreamBulkhead.stats());
+    }
+
+    /**
+     * 报表增量写入状态
+     * @return
+     */
+    @GetMapping("/report")
+    @ApiOperation("报表增量写入状态")
+    public Result<Map<String, Long>> report() {
+        return Result.success(reportRollupCollector.stats());
+    }
+
+    /**
+     * 商家端订单推送状态
+     * @return
+     */
+    @GetMapping("/orderEvents")
+    @ApiOperation("商家端订单推送状态")
+    public Result<Map<String, Long>> orderEvents() {
+        return Result.success(orderEventHub.stats());
+    }
+
+    /**
+     * 订单超时定时器状态
+     * @return
+     */
+    @GetMapping("/orderTimeout")
+    @ApiOperation("订单超时定时器状态")
+    public Result<Map<String, Long>> orderTimeout() {
+        return Result.success(orderTimeoutProcessor.stats());
+    }
+
+    /**
+     * 菜品每日限量预占统计
+     * @return
+     */
+    @GetMapping("/stock")
+    @ApiOperation("菜品每日限量预占统计")
+    public Result<Map<String, Long>> stock() {
+        return Result.success(dishStockService.stats());
+    }
+
+    /**
+     * C端菜单响应快照命中统计
+     * @return
+     */
+    @GetMapping("/menuSnapshot")
+    @ApiOperation("C端菜单响应快照命中统计")
+    public Result<Map<String, Long>> menuSnapshot() {
+        return Result.success(menuSnapshotCache.stats());
+    }
+}
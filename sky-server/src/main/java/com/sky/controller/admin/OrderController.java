@@ -0,0 +1,42 @@
+package com.sky.controller.admin;
+
+import com.sky.annotation.Log;
+import com.sky.dto.OrdersCursorQueryDTO;
+import com.sky.result.CursorPageResult;
+import com.sky.result.Result;
+import com.sky.service.OrderService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 订单管理
+ */
+@RestController("adminOrderController")
+@RequestMapping("/admin/order")
+@Api(tags = "订单管理接口")
+@Slf4j
+@Log(capture = Log.Capture.SHAPE)
+public class OrderController {
+
+    @Autowired
+    private OrderService orderService;
+
+    /**
+     * 订单游标分页搜索，翻页时传入上一页返回的nextCursor
+     *
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    @GetMapping("/conditionSearch/cursor")
+    @ApiOperation("订单游标分页搜索")
+    public Result<CursorPageResult> cursorSearch(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        log.info("订单游标分页搜索：{}", ordersCursorQueryDTO);
+        CursorPageResult cursorPageResult = orderService.cursorQuery(ordersCursorQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+}
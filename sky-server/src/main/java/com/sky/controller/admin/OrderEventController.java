@@ -0,0 +1,44 @@
+package com.sky.controller.admin;
+
+import com.sky.order.OrderEventHub;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 商家端订单实时推送，长连接不记录操作日志
+ */
+@RestController
+@RequestMapping("/admin/order")
+@Api(tags = "订单实时推送接口")
+@Slf4j
+public class OrderEventController {
+
+    @Autowired
+    private OrderEventHub orderEventHub;
+
+    /**
+     * 订阅订单事件(SSE)，连接建立后及收到RESYNC事件时客户端应重新查询订单列表
+     * 浏览器EventSource不能设置请求头，令牌可放在查询参数中：new EventSource('/admin/order/events?token=' + token)
+     *
+     * @return
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("订阅订单事件")
+    public ResponseEntity<SseEmitter> events() {
+        SseEmitter emitter = orderEventHub.connect();
+        if (emitter == null) {
+            log.warn("订单推送连接数已满，拒绝新连接");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
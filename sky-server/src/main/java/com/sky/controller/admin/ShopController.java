@@ -2,11 +2,11 @@ package com.sky.controller.admin;
 
 import com.sky.annotation.Log;
 import com.sky.result.Result;
+import com.sky.shop.ShopStatusHolder;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("adminShopController")
@@ -16,10 +16,8 @@ import org.springframework.web.bind.annotation.*;
 @Log
 public class ShopController {
 
-    public static final String KEY = "SHOP_STATUS";
-
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopStatusHolder shopStatusHolder;
 
     /**
      * 设置店铺的营业状态
@@ -30,18 +28,18 @@ public class ShopController {
     @ApiOperation("设置店铺的营业状态")
     public Result setStatus(@PathVariable Integer status){
         log.info("设置店铺的营业状态为：{}",status == 1 ? "营业中" : "打烊中");
-        redisTemplate.opsForValue().set(KEY,status);
+        shopStatusHolder.setStatus(status);
         return Result.success();
     }
 
     /**
-     * 获取店铺的营业状态
+     * 获取店铺的营业状态，即管理端设置的状态，不考虑营业时段
      * @return
      */
     @GetMapping("/status")
     @ApiOperation("获取店铺的营业状态")
     public Result<Integer> getStatus(){
-        Integer status = (Integer) redisTemplate.opsForValue().get(KEY);
+        Integer status = shopStatusHolder.getManualStatus();
         log.info("获取到店铺的营业状态为：{}",status == 1 ? "营业中" : "打烊中");
         return Result.success(status);
     }
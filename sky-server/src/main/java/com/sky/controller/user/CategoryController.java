@@ -15,7 +15,7 @@ import java.util.List;
 @RestController("userCategoryController")
 @RequestMapping("/user/category")
 @Api(tags = "C端-分类接口")
-@Log
+@Log(capture = Log.Capture.SHAPE)
 public class CategoryController {
 
     @Autowired
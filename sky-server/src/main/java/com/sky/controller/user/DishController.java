@@ -1,6 +1,8 @@
 package com.sky.controller.user;
 
 import com.sky.annotation.Log;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
@@ -10,37 +12,45 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController("userDishController")
 @RequestMapping("/user/dish")
 @Slf4j
 @Api(tags = "C端-菜品浏览接口")
-@Log
+@Log(capture = Log.Capture.SHAPE)
 public class DishController {
     @Autowired
     private DishService dishService;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
 
     /**
      * 根据分类id查询菜品
+     * 响应体为预先序列化的快照，数据仍缓存在user_dishCache::categoryId
      *
      * @param categoryId
-     * @return
+     * @param request
+     * @param response
      */
     @GetMapping("/list")
-    @ApiOperation("根据分类id查询菜品")
-    @Cacheable(cacheNames = "user_dishCache",key = "#categoryId")
-    public Result<List<DishVO>> list(Long categoryId) {
-        Dish dish = new Dish();
-        dish.setCategoryId(categoryId);
-        dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
+    @ApiOperation(value = "根据分类id查询菜品", response = DishVO.class, responseContainer = "List")
+    public void list(Long categoryId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        menuSnapshotCache.write(CacheConstant.USER_DISH_CACHE, categoryId, () -> {
+            Dish dish = new Dish();
+            dish.setCategoryId(categoryId);
+            dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        List<DishVO> list = dishService.listWithFlavor(dish);
+            List<DishVO> list = dishService.listWithFlavor(dish);
 
-        return Result.success(list);
+            return Result.success(list);
+        }, request, response);
     }
 }
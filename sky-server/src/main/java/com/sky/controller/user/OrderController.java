@@ -1,7 +1,9 @@
 package com.sky.controller.user;
 
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -14,6 +16,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 订单
  */
@@ -48,11 +52,12 @@ public class OrderController {
      */
     @PutMapping("/payment")
     @ApiOperation("订单支付")
-    public Result<OrderPaymentVO> payment(@RequestBody OrdersPaymentDTO ordersPaymentDTO) throws Exception {
+    public CompletableFuture<Result<OrderPaymentVO>> payment(@RequestBody OrdersPaymentDTO ordersPaymentDTO) {
         log.info("订单支付：{}", ordersPaymentDTO);
-        OrderPaymentVO orderPaymentVO = orderService.payment(ordersPaymentDTO);
-        log.info("生成预支付交易单：{}", orderPaymentVO);
-        return Result.success(orderPaymentVO);
+        return orderService.paymentAsync(ordersPaymentDTO).thenApply(orderPaymentVO -> {
+            log.info("生成预支付交易单：{}", orderPaymentVO);
+            return Result.success(orderPaymentVO);
+        });
     }
 
     /**
@@ -70,6 +75,19 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 历史订单游标分页查询，翻页时传入上一页返回的nextCursor
+     *
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    @GetMapping("/historyOrders/cursor")
+    @ApiOperation("历史订单游标分页查询")
+    public Result<CursorPageResult> cursorPage(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        CursorPageResult cursorPageResult = orderService.cursorQuery4User(ordersCursorQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 查询订单详情
      *
@@ -3,17 +3,18 @@ package com.sky.controller.user;
 import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.order.PayNotifyDeduplicator;
 import com.sky.properties.WeChatProperties;
 import com.sky.service.OrderService;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
@@ -28,71 +29,77 @@ public class PayNotifyController {
     private OrderService orderService;
     @Autowired
     private WeChatProperties weChatProperties;
+    @Autowired
+    private PayNotifyDeduplicator payNotifyDeduplicator;
+
+    private volatile AesUtil aesUtil; //解密工具只依赖apiV3Key，创建一次后复用
 
     /**
      * 支付成功回调
+     * 微信会对同一通知多次重试，按通知id去重，重复通知在解密前直接应答
      *
      * @param request
      */
     @RequestMapping("/paySuccess")
     public void paySuccessNotify(HttpServletRequest request, HttpServletResponse response) throws Exception {
         //读取数据
-        String body = readData(request);
-        log.info("支付成功回调：{}", body);
+        byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+        JSONObject notification = JSON.parseObject(new String(body, StandardCharsets.UTF_8));
+        String notifyId = notification.getString("id");//通知id，同一通知的重试相同
+        log.info("支付成功回调，通知id：{}", notifyId);
 
-        //数据解密
-        String plainText = decryptData(body);
-        log.info("解密后的文本：{}", plainText);
+        switch (payNotifyDeduplicator.claim(notifyId)) {
+            case DUPLICATE:
+                log.info("重复的支付成功回调，直接应答：{}", notifyId);
+                responseToWeixin(response, true);
+                return;
+            case IN_PROGRESS:
+                //其他请求正在处理，让微信稍后重试
+                responseToWeixin(response, false);
+                return;
+            default:
+                break;
+        }
 
-        JSONObject jsonObject = JSON.parseObject(plainText);
-        String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
-        String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
+        try {
+            //数据解密
+            String plainText = decryptData(notification);
 
-        log.info("商户平台订单号：{}", outTradeNo);
-        log.info("微信支付交易号：{}", transactionId);
+            JSONObject jsonObject = JSON.parseObject(plainText);
+            String outTradeNo = jsonObject.getString("out_trade_no");//商户平台订单号
+            String transactionId = jsonObject.getString("transaction_id");//微信支付交易号
+            log.info("商户平台订单号：{}，微信支付交易号：{}", outTradeNo, transactionId);
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+            //业务处理，修改订单状态、来单提醒
+            orderService.paySuccess(outTradeNo, transactionId);
+        } catch (Exception e) {
+            payNotifyDeduplicator.release(notifyId);
+            throw e;
+        }
+        payNotifyDeduplicator.complete(notifyId);
 
         //给微信响应
-        responseToWeixin(response);
-    }
-
-    /**
-     * 读取数据
-     *
-     * @param request
-     * @return
-     * @throws Exception
-     */
-    private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
-            }
-            result.append(line);
-        }
-        return result.toString();
+        responseToWeixin(response, true);
     }
 
     /**
      * 数据解密
      *
-     * @param body
+     * @param notification
      * @return
      * @throws Exception
      */
-    private String decryptData(String body) throws Exception {
-        JSONObject resultObject = JSON.parseObject(body);
-        JSONObject resource = resultObject.getJSONObject("resource");
+    private String decryptData(JSONObject notification) throws Exception {
+        JSONObject resource = notification.getJSONObject("resource");
         String ciphertext = resource.getString("ciphertext");
         String nonce = resource.getString("nonce");
         String associatedData = resource.getString("associated_data");
 
-        AesUtil aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+        AesUtil aesUtil = this.aesUtil;
+        if (aesUtil == null) {
+            aesUtil = new AesUtil(weChatProperties.getApiV3Key().getBytes(StandardCharsets.UTF_8));
+            this.aesUtil = aesUtil;
+        }
         //密文解密
         String plainText = aesUtil.decryptToString(associatedData.getBytes(StandardCharsets.UTF_8),
                 nonce.getBytes(StandardCharsets.UTF_8),
@@ -102,14 +109,15 @@ public class PayNotifyController {
     }
 
     /**
-     * 给微信响应
+     * 给微信响应，失败时微信会稍后重试
      * @param response
+     * @param success
      */
-    private void responseToWeixin(HttpServletResponse response) throws Exception{
-        response.setStatus(200);
+    private void responseToWeixin(HttpServletResponse response, boolean success) throws Exception{
+        response.setStatus(success ? 200 : 500);
         HashMap<Object, Object> map = new HashMap<>();
-        map.put("code", "SUCCESS");
-        map.put("message", "SUCCESS");
+        map.put("code", success ? "SUCCESS" : "FAIL");
+        map.put("message", success ? "SUCCESS" : "PROCESSING");
         response.setHeader("Content-type", ContentType.APPLICATION_JSON.toString());
         response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
         response.flushBuffer();
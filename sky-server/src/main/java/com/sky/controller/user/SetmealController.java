@@ -1,6 +1,8 @@
 package com.sky.controller.user;
 
 import com.sky.annotation.Log;
+import com.sky.cache.MenuSnapshotCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
@@ -9,37 +11,45 @@ import com.sky.vo.DishItemVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController("userSetmealController")
 @RequestMapping("/user/setmeal")
 @Api(tags = "C端-套餐浏览接口")
-@Log
+@Log(capture = Log.Capture.SHAPE)
 public class SetmealController {
     @Autowired
     private SetmealService setmealService;
+    @Autowired
+    private MenuSnapshotCache menuSnapshotCache;
 
     /**
      * 条件查询
+     * 响应体为预先序列化的快照，数据仍缓存在setmealCache::categoryId
      *
      * @param categoryId
-     * @return
+     * @param request
+     * @param response
      */
-    @Cacheable(cacheNames = "setmealCache",key = "#categoryId") //key: setmealCache::100
     @GetMapping("/list")
-    @ApiOperation("根据分类id查询套餐")
-    public Result<List<Setmeal>> list(Long categoryId) {
-        Setmeal setmeal = new Setmeal();
-        setmeal.setCategoryId(categoryId);
-        setmeal.setStatus(StatusConstant.ENABLE);
+    @ApiOperation(value = "根据分类id查询套餐", response = Setmeal.class, responseContainer = "List")
+    public void list(Long categoryId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        menuSnapshotCache.write(CacheConstant.SETMEAL_CACHE, categoryId, () -> { //key: setmealCache::100
+            Setmeal setmeal = new Setmeal();
+            setmeal.setCategoryId(categoryId);
+            setmeal.setStatus(StatusConstant.ENABLE);
 
-        List<Setmeal> list = setmealService.list(setmeal);
-        return Result.success(list);
+            List<Setmeal> list = setmealService.list(setmeal);
+            return Result.success(list);
+        }, request, response);
     }
 
     /**
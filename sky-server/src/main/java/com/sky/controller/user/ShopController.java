@@ -2,37 +2,30 @@ package com.sky.controller.user;
 
 import com.sky.annotation.Log;
 import com.sky.result.Result;
+import com.sky.shop.ShopStatusHolder;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("userShopController")
 @RequestMapping("/user/shop")
 @Api(tags = "店铺相关接口")
 @Slf4j
-@Log
+@Log(capture = Log.Capture.SHAPE, sampleRate = 100)
 public class ShopController {
 
-    public static final String KEY = "SHOP_STATUS";
-
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopStatusHolder shopStatusHolder;
 
     /**
-     * 获取店铺的营业状态
+     * 获取店铺的营业状态，读取本地副本，不访问redis
      * @return
      */
     @GetMapping("/status")
     @ApiOperation("获取店铺的营业状态")
     public Result<Integer> getStatus(){
-        Integer status = (Integer) redisTemplate.opsForValue().get(KEY);
-        if (status == null)
-            redisTemplate.opsForValue().set(KEY,1);
-        status = (Integer) redisTemplate.opsForValue().get(KEY);
-        log.info("获取到店铺的营业状态为：{}",status == 1 ? "营业中" : "打烊中");
-        return Result.success(status);
+        return Result.success(shopStatusHolder.getStatus());
     }
-}
\ No newline at end of file
+}
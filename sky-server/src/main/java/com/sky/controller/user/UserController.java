@@ -19,6 +19,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user/user")
@@ -39,12 +40,14 @@ public class UserController {
      */
     @PostMapping("/login")
     @ApiOperation("微信登录")
-    public Result<UserLoginVO> login(@RequestBody UserLoginDTO userLoginDTO){
+    public CompletableFuture<Result<UserLoginVO>> login(@RequestBody UserLoginDTO userLoginDTO){
         log.info("微信用户登录：{}",userLoginDTO.getCode());
 
-        //微信登录
-        User user = userService.wxLogin(userLoginDTO);//后绪步骤实现
+        //微信登录，等待微信接口期间不占用请求线程
+        return userService.wxLoginAsync(userLoginDTO).thenApply(this::loginResult);
+    }
 
+    private Result<UserLoginVO> loginResult(User user) {
         //为微信用户生成jwt令牌
         Map<String, Object> claims = new HashMap<>();
         claims.put(JwtClaimsConstant.USER_ID,user.getId());
@@ -0,0 +1,45 @@
+package com.sky.filter;
+
+import com.sky.context.RequestContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 为每个请求建立请求上下文，请求结束(包括异步请求的再次分派)后一定清理，线程复用时不会串号
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestContextFilter extends OncePerRequestFilter {
+
+    private static final String CONTEXT_ATTRIBUTE = RequestContextFilter.class.getName() + ".CONTEXT";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        //异步请求再次分派时沿用首次分派建立的上下文，请求id和开始时间保持不变
+        RequestContext context = (RequestContext) request.getAttribute(CONTEXT_ATTRIBUTE);
+        if (context == null) {
+            context = RequestContext.create(request.getHeader(RequestContext.REQUEST_ID_HEADER),
+                    request.getHeader(RequestContext.TENANT_HEADER));
+            request.setAttribute(CONTEXT_ATTRIBUTE, context);
+            response.setHeader(RequestContext.REQUEST_ID_HEADER, context.getRequestId());
+        }
+
+        try (RequestContext.Scope ignored = RequestContext.attach(context)) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+}
@@ -3,13 +3,12 @@ package com.sky.interceptor;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -20,9 +19,20 @@ import javax.servlet.http.HttpServletResponse;
 @Slf4j
 public class JwtTokenAdminInterceptor implements HandlerInterceptor {
 
+    //浏览器EventSource不能设置请求头，只有订单推送接口允许从同名查询参数中读取令牌
+    private static final String QUERY_TOKEN_PATH = "/admin/order/events";
+
     @Autowired
     private JwtProperties jwtProperties;
 
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    @PostConstruct
+    public void init() {
+        jwtTokenVerifier = new JwtTokenVerifier(jwtProperties.getAdminSecretKey(), JwtClaimsConstant.EMP_ID,
+                jwtProperties.getVerifyCacheSize(), jwtProperties.getVerifyCacheSeconds());
+    }
+
     /**
      * 校验jwt
      *
@@ -38,17 +48,25 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
             return true;//当前拦截到的不是动态方法，直接放行
 
         String token = request.getHeader(jwtProperties.getAdminTokenName());//从请求头中获取令牌
+        if ((token == null || token.isEmpty()) && QUERY_TOKEN_PATH.equals(request.getServletPath()))
+            token = request.getParameter(jwtProperties.getAdminTokenName());
         try {//校验令牌
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
-            Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
-            log.info("当前员工id：{}", empId);
+            Long empId = jwtTokenVerifier.verify(token);
             BaseContext.setCurrentId(empId);//将用户id存储到ThreadLocal
             return true;//通过，放行
         } catch (Exception ex) {
+            log.debug("jwt校验未通过：{}", ex.getMessage());
             //不通过，响应401状态码
             response.setStatus(401);
             return false;
         }
     }
+
+    /**
+     * 请求结束时清理登录id，请求上下文本身由RequestContextFilter清理
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        BaseContext.removeCurrentId();
+    }
 }
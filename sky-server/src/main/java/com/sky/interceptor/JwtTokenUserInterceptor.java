@@ -3,14 +3,13 @@ package com.sky.interceptor;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -24,6 +23,14 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
     @Autowired
     private JwtProperties jwtProperties;
 
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    @PostConstruct
+    public void init() {
+        jwtTokenVerifier = new JwtTokenVerifier(jwtProperties.getUserSecretKey(), JwtClaimsConstant.USER_ID,
+                jwtProperties.getVerifyCacheSize(), jwtProperties.getVerifyCacheSeconds());
+    }
+
     /**
      * 校验jwt
      *
@@ -45,17 +52,23 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
         //2、校验令牌
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
-            Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前用户的id：", userId);
+            Long userId = jwtTokenVerifier.verify(token);
             BaseContext.setCurrentId(userId);
             //3、通过，放行
             return true;
         } catch (Exception ex) {
+            log.debug("jwt校验未通过：{}", ex.getMessage());
             //4、不通过，响应401状态码
             response.setStatus(401);
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 请求结束时清理登录id，请求上下文本身由RequestContextFilter清理
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        BaseContext.removeCurrentId();
+    }
+}
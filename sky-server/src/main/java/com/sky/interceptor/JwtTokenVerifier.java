@@ -0,0 +1,115 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt令牌校验，校验通过的令牌按其摘要缓存，同一令牌在缓存期内不再重复验签和解析
+ * 缓存时间不超过令牌本身的过期时间，缓存中不保存令牌原文
+ */
+public class JwtTokenVerifier {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtParser parser;
+    private final String idClaim;
+    private final Cache<ByteBuffer, VerifiedToken> verified;
+
+    /**
+     * @param secretKey jwt秘钥
+     * @param idClaim 令牌中保存登录id的声明名称
+     * @param cacheSize 最多缓存的令牌数
+     * @param cacheSeconds 缓存时间上限
+     */
+    public JwtTokenVerifier(String secretKey, String idClaim, int cacheSize, long cacheSeconds) {
+        this.parser = JwtUtil.parser(secretKey);
+        this.idClaim = idClaim;
+        long maxCacheNanos = TimeUnit.SECONDS.toNanos(cacheSeconds);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<ByteBuffer, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+                        if (value.expiresAt == Long.MAX_VALUE)
+                            return maxCacheNanos;
+                        long remaining = TimeUnit.MILLISECONDS.toNanos(value.expiresAt - System.currentTimeMillis());
+                        return Math.max(0, Math.min(remaining, maxCacheNanos));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 校验令牌
+     * @param token
+     * @return 令牌中的登录id
+     * @throws io.jsonwebtoken.JwtException 令牌无效或已过期
+     */
+    public Long verify(String token) {
+        if (token == null || token.isEmpty())
+            throw new IllegalArgumentException("令牌为空");
+
+        ByteBuffer key = digest(token);
+        VerifiedToken cached = verified.getIfPresent(key);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis())
+            return cached.id;
+
+        //未命中才验签；失败抛出异常，不缓存
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Long id = Long.valueOf(claims.get(idClaim).toString());
+        Date expiration = claims.getExpiration();
+        verified.put(key, new VerifiedToken(id, expiration == null ? Long.MAX_VALUE : expiration.getTime()));
+        return id;
+    }
+
+    /**
+     * 缓存的令牌数
+     * @return
+     */
+    public long size() {
+        return verified.estimatedSize();
+    }
+
+    private static ByteBuffer digest(String token) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static final class VerifiedToken {
+        private final Long id;
+        private final long expiresAt;
+
+        VerifiedToken(Long id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.sky.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.sky.entity.DishFlavor;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -12,4 +15,11 @@ public interface DishFlavorMapper extends BaseMapper<DishFlavor> {
      * @param flavors
      */
     void insertBatch(List<DishFlavor> flavors);
+
+    /**
+     * 根据多个菜品id批量查询口味数据，按dish_id、id排序
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> selectByDishIds(@Param("dishIds") Collection<Long> dishIds);
 }
@@ -0,0 +1,35 @@
+package com.sky.mapper;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishStockDaily;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DishStockMapper {
+
+    /**
+     * 查询设置了每日限量的菜品
+     * @return 只包含id和dailyQuota
+     */
+    @Select("select id, daily_quota from dish where daily_quota > 0")
+    List<Dish> listQuotas();
+
+    /**
+     * 查询某日各菜品已售份数
+     * @param stockDate
+     * @return
+     */
+    @Select("select stock_date, dish_id, sold from dish_stock_daily where stock_date = #{stockDate}")
+    List<DishStockDaily> listByDate(LocalDate stockDate);
+
+    /**
+     * 写入已售份数，已存在时覆盖
+     * @param stocks
+     */
+    void upsertSold(@Param("stocks") List<DishStockDaily> stocks);
+}
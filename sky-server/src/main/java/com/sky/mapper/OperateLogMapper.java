@@ -5,6 +5,8 @@ import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.List;
+
 @Mapper
 public interface OperateLogMapper {
 
@@ -24,4 +26,10 @@ public interface OperateLogMapper {
     @Insert("insert into operate_log (operate_user, operate_time, class_name, method_name, method_params, return_value, cost_time) " +
             "values (#{operateUser}, #{operateTime}, #{className}, #{methodName}, #{methodParams}, #{returnValue}, #{costTime});")
     void insert(OperateLog log);
+
+    /**
+     * 批量插入日志数据
+     * @param logs
+     */
+    void insertBatch(List<OperateLog> logs);
 }
@@ -2,8 +2,10 @@ package com.sky.mapper;
 
 import com.sky.entity.OrderDetail;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -22,4 +24,12 @@ public interface OrderDetailMapper {
      */
     @Select("select * from order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据多个订单id批量查询订单明细，按order_id、id排序
+     * @param orderIds
+     * @param limit 每个订单最多返回的明细条数，为null或不大于0时不限制
+     * @return
+     */
+    List<OrderDetail> getByOrderIds(@Param("orderIds") Collection<Long> orderIds, @Param("limit") Integer limit);
 }
\ No newline at end of file
@@ -2,10 +2,14 @@ package com.sky.mapper;
 
 import com.github.pagehelper.Page;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +22,12 @@ public interface OrderMapper {
      */
     void insert(Orders order);
 
+    /**
+     * 批量插入订单数据，回填各订单id
+     * @param orders
+     */
+    void insertBatch(List<Orders> orders);
+
     /**
      * 根据订单号查询订单
      * @param orderNumber
@@ -25,6 +35,34 @@ public interface OrderMapper {
     @Select("select * from orders where number = #{orderNumber}")
     Orders getByNumber(String orderNumber);
 
+    /**
+     * 按订单号更新支付结果，仅当订单仍处于期望状态时更新
+     * @param number 订单号
+     * @param expectedStatus 期望的当前状态
+     * @param status 新状态
+     * @param payStatus 支付状态
+     * @param checkoutTime 结账时间
+     * @return 影响行数，为0表示订单不处于期望状态
+     */
+    @Update("update orders set status = #{status}, pay_status = #{payStatus}, checkout_time = #{checkoutTime} " +
+            "where number = #{number} and status = #{expectedStatus}")
+    int updateStatusByNumber(@Param("number") String number, @Param("expectedStatus") Integer expectedStatus,
+                             @Param("status") Integer status, @Param("payStatus") Integer payStatus,
+                             @Param("checkoutTime") LocalDateTime checkoutTime);
+
+    /**
+     * 取消订单(状态改为6已取消)，仅当订单仍处于期望状态时更新
+     * @param id
+     * @param expectedStatus 期望的当前状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return 更新的行数，状态已变化时为0
+     */
+    @Update("update orders set status = 6, cancel_reason = #{cancelReason}, cancel_time = #{cancelTime} " +
+            "where id = #{id} and status = #{expectedStatus}")
+    int cancelIfStatus(@Param("id") Long id, @Param("expectedStatus") Integer expectedStatus,
+                       @Param("cancelReason") String cancelReason, @Param("cancelTime") LocalDateTime cancelTime);
+
     /**
      * 修改订单信息
      * @param orders
@@ -37,6 +75,65 @@ public interface OrderMapper {
      */
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 游标分页条件查询，按(下单时间,id)倒序定位到上一页最后一条之后
+     * @param query
+     * @param lastOrderTime 上一页最后一条的下单时间，首页为null
+     * @param lastId 上一页最后一条的id，首页为null
+     * @param limit
+     * @return
+     */
+    List<Orders> cursorQuery(@Param("query") OrdersCursorQueryDTO query,
+                             @Param("lastOrderTime") LocalDateTime lastOrderTime,
+                             @Param("lastId") Long lastId,
+                             @Param("limit") int limit);
+
+    /**
+     * 按下单时间流式读取订单，逐条交给handler处理，不生成结果列表；处理期间不能在同一连接上执行其他查询
+     * @param begin 包含
+     * @param end 不包含
+     * @param handler
+     */
+    void streamByOrderTime(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end,
+                           ResultHandler<Orders> handler);
+
+    /**
+     * 流式读取某状态的全部订单id和下单时间，用于重建超时定时器
+     * @param status
+     * @param handler
+     */
+    void streamByStatus(@Param("status") Integer status, ResultHandler<Orders> handler);
+
+    /**
+     * 锁定仍处于指定状态且已超时的订单
+     * @param status 当前状态
+     * @param before 下单时间早于该时间视为超时
+     * @param ids 候选订单id
+     * @return
+     */
+    List<Orders> lockTimeoutOrders(@Param("status") Integer status, @Param("before") LocalDateTime before,
+                                   @Param("ids") List<Long> ids);
+
+    /**
+     * 批量更新超时订单状态，仅更新仍处于原状态的订单
+     * @param ids
+     * @param fromStatus 原状态
+     * @param toStatus 新状态
+     * @param cancelReason 取消原因，不取消时为null
+     * @param time 取消时间或送达时间
+     * @return 影响行数
+     */
+    int updateTimeoutStatus(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus,
+                            @Param("toStatus") Integer toStatus, @Param("cancelReason") String cancelReason,
+                            @Param("time") LocalDateTime time);
+
+    /**
+     * 统计满足游标分页条件的订单数
+     * @param query
+     * @return
+     */
+    long countByCondition(@Param("query") OrdersCursorQueryDTO query);
+
     /**
      * 根据id查询订单
      * @param id
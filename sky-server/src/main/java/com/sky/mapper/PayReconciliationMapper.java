@@ -0,0 +1,34 @@
+package com.sky.mapper;
+
+import com.sky.entity.PayReconciliation;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface PayReconciliationMapper {
+
+    /**
+     * 登记对账记录，同一订单号只登记一次
+     * @param payReconciliation
+     * @return 新登记时为1，已存在时为0
+     */
+    @Insert("insert ignore into pay_reconciliation (order_number, transaction_id, order_status, reason, status, create_time, update_time) " +
+            "values (#{orderNumber}, #{transactionId}, #{orderStatus}, #{reason}, #{status}, #{createTime}, #{updateTime})")
+    int insertIgnore(PayReconciliation payReconciliation);
+
+    /**
+     * 更新处理状态
+     * @param orderNumber
+     * @param status
+     * @param remark
+     * @param updateTime
+     */
+    @Update("update pay_reconciliation set status = #{status}, remark = #{remark}, update_time = #{updateTime} " +
+            "where order_number = #{orderNumber}")
+    void updateStatus(@Param("orderNumber") String orderNumber, @Param("status") Integer status,
+                      @Param("remark") String remark, @Param("updateTime") LocalDateTime updateTime);
+}
@@ -0,0 +1,94 @@
+package com.sky.mapper;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.ReportDishDaily;
+import com.sky.entity.ReportHourly;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface ReportMapper {
+
+    /**
+     * 累加小时汇总增量
+     * @param deltas
+     */
+    void addHourly(@Param("deltas") List<ReportHourly> deltas);
+
+    /**
+     * 累加商品日销量增量
+     * @param deltas
+     */
+    void addDishDaily(@Param("deltas") List<ReportDishDaily> deltas);
+
+    /**
+     * 删除某日的小时汇总
+     * @param reportDate
+     */
+    @Delete("delete from report_hourly where report_date = #{reportDate}")
+    void deleteHourlyByDate(LocalDate reportDate);
+
+    /**
+     * 删除某日的商品销量
+     * @param reportDate
+     */
+    @Delete("delete from report_dish_daily where report_date = #{reportDate}")
+    void deleteDishDailyByDate(LocalDate reportDate);
+
+    /**
+     * 按订单明细重建某日的订单相关小时汇总
+     * @param reportDate
+     * @param begin 当日0点
+     * @param end 次日0点
+     */
+    void rebuildHourlyOrders(@Param("reportDate") LocalDate reportDate,
+                             @Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
+
+    /**
+     * 按用户表重建某日的新增用户小时汇总
+     * @param reportDate
+     * @param begin 当日0点
+     * @param end 次日0点
+     */
+    void rebuildHourlyUsers(@Param("reportDate") LocalDate reportDate,
+                            @Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
+
+    /**
+     * 按订单明细重建某日的商品销量
+     * @param reportDate
+     * @param begin 当日0点
+     * @param end 次日0点
+     */
+    void rebuildDishDaily(@Param("reportDate") LocalDate reportDate,
+                          @Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
+
+    /**
+     * 按天汇总日期范围内的数据，没有数据的日期不返回
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<ReportHourly> sumByDate(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+
+    /**
+     * 某日之前的新增用户总数
+     * @param date
+     * @return
+     */
+    @Select("select ifnull(sum(new_user_count), 0) from report_hourly where report_date < #{date}")
+    int sumNewUsersBefore(LocalDate date);
+
+    /**
+     * 日期范围内销量排名前10的商品
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> salesTop10(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+}
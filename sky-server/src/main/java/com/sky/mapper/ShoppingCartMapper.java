@@ -33,4 +33,26 @@ public interface ShoppingCartMapper extends BaseMapper<ShoppingCart> {
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 加入购物车，商品已存在时数量加1
+     *
+     * @param shoppingCart 需要userId、dishId/setmealId、dishFlavor
+     */
+    void insertOrIncrement(ShoppingCart shoppingCart);
+
+    /**
+     * 商品数量减1，减少后的数量写回shoppingCart.number
+     *
+     * @param shoppingCart 需要userId、dishId/setmealId、dishFlavor
+     * @return 影响行数，为0表示购物车中没有该商品
+     */
+    int decrement(ShoppingCart shoppingCart);
+
+    /**
+     * 删除数量已减到0的商品
+     *
+     * @param shoppingCart
+     */
+    void deleteIfEmpty(ShoppingCart shoppingCart);
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.sky.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 事务提交后发布、向本节点订阅者分发的公共部分
+ */
+@Slf4j
+public abstract class AbstractOrderEventBus implements OrderEventBus {
+
+    private final List<Consumer<OrderEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(OrderEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                send(event);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<OrderEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * 把事件送到所有节点，由各节点调用dispatch
+     * @param event
+     */
+    protected abstract void send(OrderEvent event);
+
+    /**
+     * 分发给本节点的订阅者
+     * @param event
+     */
+    protected void dispatch(OrderEvent event) {
+        for (Consumer<OrderEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (Exception e) {
+                log.error("订单事件处理失败：{}，原因：{}", event, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.sky.order;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 单节点的订单事件总线，直接在发布线程中分发，用于单机部署和本地调试
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order", name = "event-bus", havingValue = "memory")
+public class InMemoryOrderEventBus extends AbstractOrderEventBus {
+
+    @Override
+    protected void send(OrderEvent event) {
+        dispatch(event);
+    }
+}
@@ -0,0 +1,81 @@
+package com.sky.order;
+
+import com.sky.properties.OrderProperties;
+import com.sky.utils.TimingWheel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内时间轮保存订单超时，用于单节点部署；多节点时各节点只持有自己受理的订单，启动时都会从数据库重建，
+ * 同一订单被多个节点处理时由条件更新保证只生效一次
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order", name = "timeout-mode", havingValue = "local", matchIfMissing = true)
+public class LocalOrderTimeoutQueue implements OrderTimeoutQueue {
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private final Map<OrderTimeoutType, TimingWheel> wheels = new EnumMap<>(OrderTimeoutType.class);
+    private final Map<OrderTimeoutType, ArrayDeque<Long>> expired = new EnumMap<>(OrderTimeoutType.class);
+
+    @PostConstruct
+    public void init() {
+        long now = System.currentTimeMillis();
+        for (OrderTimeoutType type : OrderTimeoutType.values()) {
+            wheels.put(type, new TimingWheel(orderProperties.getTimeoutTickMs(), now));
+            expired.put(type, new ArrayDeque<>());
+        }
+    }
+
+    @Override
+    public void schedule(OrderTimeoutType type, long orderId, long deadlineMs) {
+        wheels.get(type).add(orderId, deadlineMs);
+    }
+
+    @Override
+    public void scheduleAll(OrderTimeoutType type, Map<Long, Long> deadlines) {
+        TimingWheel wheel = wheels.get(type);
+        deadlines.forEach(wheel::add);
+    }
+
+    @Override
+    public boolean claimRebuild() {
+        return true;
+    }
+
+    @Override
+    public void cancel(OrderTimeoutType type, long orderId) {
+        wheels.get(type).cancel(orderId);
+    }
+
+    @Override
+    public List<Long> pollExpired(OrderTimeoutType type, int max) {
+        //只由定时任务单线程调用
+        ArrayDeque<Long> queue = expired.get(type);
+        if (queue.isEmpty())
+            queue.addAll(wheels.get(type).advance(System.currentTimeMillis()));
+        List<Long> ids = new ArrayList<>(Math.min(max, queue.size()));
+        while (ids.size() < max && !queue.isEmpty())
+            ids.add(queue.poll());
+        return ids;
+    }
+
+    @Override
+    public void ack(OrderTimeoutType type, List<Long> orderIds) {
+        //进程内定时器随进程丢失，重启后从数据库重建，取出即视为已认领
+    }
+
+    @Override
+    public long size(OrderTimeoutType type) {
+        return wheels.get(type).size() + expired.get(type).size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sky.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单生命周期事件，推送给商家端
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent {
+
+    public static final String SUBMITTED = "SUBMITTED"; //用户下单
+    public static final String PAID = "PAID"; //支付成功，待接单
+    public static final String CANCELLED = "CANCELLED"; //订单取消
+    public static final String COMPLETED = "COMPLETED"; //订单完成
+    public static final String RESYNC = "RESYNC"; //推送积压被丢弃，客户端需重新查询订单列表
+
+    private String type; //事件类型
+    private Long orderId; //订单id，按订单号发生的事件可能为空
+    private String number; //订单号
+    private Integer status; //事件发生后的订单状态
+    private BigDecimal amount; //订单金额
+    private LocalDateTime eventTime; //事件时间
+}
@@ -0,0 +1,21 @@
+package com.sky.order;
+
+import java.util.function.Consumer;
+
+/**
+ * 订单事件总线，多节点部署时经redis广播，每个节点都收到全部事件
+ */
+public interface OrderEventBus {
+
+    /**
+     * 发布事件，在事务中调用时提交后才发布
+     * @param event
+     */
+    void publish(OrderEvent event);
+
+    /**
+     * 订阅事件，回调在总线的线程中执行，不能阻塞
+     * @param subscriber
+     */
+    void subscribe(Consumer<OrderEvent> subscriber);
+}
@@ -0,0 +1,169 @@
+package com.sky.order;
+
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把订单事件推送给已连接的商家端(SSE)
+ * 每个连接有独立的有界缓冲，由少量发送线程轮流发送，慢连接不会拖慢总线和其他连接；
+ * 缓冲满时丢弃积压，只保留一个RESYNC事件，提示客户端重新查询
+ */
+@Component
+@Slf4j
+public class OrderEventHub {
+
+    @Autowired
+    private OrderEventBus orderEventBus;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private ExecutorService senders;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(orderProperties.getSseSenderThreads(), r -> {
+            Thread thread = new Thread(r, "order-event-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        orderEventBus.subscribe(this::broadcast);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.forEach(connection -> connection.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    /**
+     * 建立推送连接
+     * @return 连接数已满时返回null
+     */
+    public SseEmitter connect() {
+        if (connections.size() >= orderProperties.getSseMaxConnections()) {
+            rejected.increment();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(orderProperties.getSseTimeoutMs());
+        Connection connection = new Connection(emitter, orderProperties.getSseBufferSize());
+        emitter.onCompletion(() -> connections.remove(connection));
+        emitter.onTimeout(() -> connections.remove(connection));
+        emitter.onError(e -> connections.remove(connection));
+        connections.add(connection);
+        return emitter;
+    }
+
+    /**
+     * 定时发送心跳注释，保持连接并及时发现已断开的客户端
+     */
+    @Scheduled(fixedDelayString = "${sky.order.sse-heartbeat-ms:15000}")
+    public void heartbeat() {
+        connections.forEach(connection -> connection.offer(Payload.HEARTBEAT));
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("connections", (long) connections.size());
+        stats.put("received", received.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private void broadcast(OrderEvent event) {
+        received.increment();
+        Payload payload = new Payload(event);
+        connections.forEach(connection -> connection.offer(payload));
+    }
+
+    /**
+     * 待发送的内容，事件或心跳
+     */
+    private static final class Payload {
+        static final Payload HEARTBEAT = new Payload(null);
+
+        private final OrderEvent event;
+
+        Payload(OrderEvent event) {
+            this.event = event;
+        }
+    }
+
+    private final class Connection {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Payload> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean(); //是否已有发送线程在处理该连接
+
+        Connection(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(Payload payload) {
+            if (!buffer.offer(payload)) {
+                //客户端跟不上，丢弃积压，改为通知其重新查询
+                dropped.add(buffer.size());
+                buffer.clear();
+                buffer.offer(new Payload(OrderEvent.builder().type(OrderEvent.RESYNC).eventTime(LocalDateTime.now()).build()));
+            }
+            if (scheduled.compareAndSet(false, true))
+                senders.execute(this::drain);
+        }
+
+        private void drain() {
+            try {
+                Payload payload;
+                while ((payload = buffer.poll()) != null) {
+                    if (payload.event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(payload.event.getType()).data(payload.event, MediaType.APPLICATION_JSON));
+                        delivered.increment();
+                    }
+                }
+            } catch (Exception e) {
+                //客户端已断开
+                connections.remove(this);
+                buffer.clear();
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            //释放标记后可能有新的内容进入，补一次调度
+            if (!buffer.isEmpty() && scheduled.compareAndSet(false, true))
+                senders.execute(this::drain);
+        }
+    }
+}
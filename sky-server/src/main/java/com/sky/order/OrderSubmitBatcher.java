@@ -0,0 +1,236 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下单组提交
+ * 请求线程只把构造好的订单放入队列并等待结果，不占用数据库连接；
+ * 后台线程攒批后在一个事务中多行insert订单和明细，提交后再通知各请求；
+ * 请求等待超时可取消订单，后台线程写入前先认领，已取消的订单不会再入库
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "sky.order", name = "submit-mode", havingValue = "batch")
+public class OrderSubmitBatcher {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private BlockingQueue<PendingOrder> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    private final LongAdder accepted = new LongAdder(); //入队订单数
+    private final LongAdder rejected = new LongAdder(); //队列满被拒绝的订单数
+    private final LongAdder committed = new LongAdder(); //成功入库订单数
+    private final LongAdder failed = new LongAdder(); //入库失败订单数
+    private final LongAdder batches = new LongAdder(); //成功提交的批次数
+    private final LongAdder fallbacks = new LongAdder(); //整批失败后逐单重试的批次数
+    private final LongAdder cancelled = new LongAdder(); //等待超时被取消、未入库的订单数
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(orderProperties.getBatchQueueCapacity());
+        running = true;
+        worker = new Thread(this::drainLoop, "order-submit-batcher");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("下单组提交已启动，队列容量：{}，每批最多：{}单", orderProperties.getBatchQueueCapacity(), orderProperties.getBatchSize());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(5));//等待已入队的订单写完
+    }
+
+    /**
+     * 提交订单，返回的future在订单所在事务提交后完成，订单和明细的id均已回填
+     * 调用方可cancel该future放弃订单：尚未被后台线程认领时取消成功，订单不会入库；
+     * 已认领的订单正在写入，cancel返回false，需等待写入结果
+     * @param order
+     * @param orderDetailList
+     * @return
+     */
+    public CompletableFuture<Orders> submit(Orders order, List<OrderDetail> orderDetailList) {
+        PendingOrder pendingOrder = new PendingOrder(order, orderDetailList);
+        if (!running || !queue.offer(pendingOrder)) {
+            rejected.increment();
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_BUSY);
+        }
+        accepted.increment();
+        return pendingOrder.future;
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", (long) queue.size());
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("committed", committed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("cancelled", cancelled.sum());
+        return stats;
+    }
+
+    private void drainLoop() {
+        int batchSize = orderProperties.getBatchSize();
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(orderProperties.getBatchMaxWaitMs());
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+
+                //第一单到达后最多再等maxWait，凑够一批立即提交
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0)
+                        break;
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingOrder> pending) {
+        //认领后调用方不能再取消；已取消的订单跳过，调用方已按失败处理
+        List<PendingOrder> batch = new ArrayList<>(pending.size());
+        for (PendingOrder pendingOrder : pending) {
+            if (pendingOrder.claim())
+                batch.add(pendingOrder);
+            else
+                cancelled.increment();
+        }
+        if (batch.isEmpty())
+            return;
+
+        try {
+            transactionTemplate.execute(status -> {
+                insert(batch);
+                return null;
+            });
+        } catch (Exception e) {
+            //整批失败时逐单提交，避免一单的问题拖累同批其他订单
+            fallbacks.increment();
+            log.warn("下单批量提交失败，改为逐单提交，批大小：{}，原因：{}", batch.size(), e.getMessage());
+            for (PendingOrder pendingOrder : batch) {
+                try {
+                    transactionTemplate.execute(status -> {
+                        insert(Collections.singletonList(pendingOrder));
+                        return null;
+                    });
+                    complete(pendingOrder);
+                } catch (Exception ex) {
+                    failed.increment();
+                    pendingOrder.future.completeExceptionally(ex);
+                }
+            }
+            return;
+        }
+
+        batches.increment();
+        for (PendingOrder pendingOrder : batch)
+            complete(pendingOrder);
+    }
+
+    private void insert(List<PendingOrder> batch) {
+        List<Orders> orders = new ArrayList<>(batch.size());
+        for (PendingOrder pendingOrder : batch)
+            orders.add(pendingOrder.order);
+        orderMapper.insertBatch(orders);//回填各订单id
+
+        List<OrderDetail> orderDetails = new ArrayList<>();
+        for (PendingOrder pendingOrder : batch) {
+            for (OrderDetail orderDetail : pendingOrder.orderDetailList) {
+                orderDetail.setOrderId(pendingOrder.order.getId());
+                orderDetails.add(orderDetail);
+            }
+        }
+        orderDetailMapper.insertBatch(orderDetails);
+    }
+
+    private void complete(PendingOrder pendingOrder) {
+        committed.increment();
+        pendingOrder.future.complete(pendingOrder.order);
+    }
+
+    private static final class PendingOrder {
+        private static final int WAITING = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Orders order;
+        private final List<OrderDetail> orderDetailList;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        //取消与认领互斥，只有仍在等待的订单能取消
+        private final CompletableFuture<Orders> future = new CompletableFuture<Orders>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return state.compareAndSet(WAITING, CANCELLED) && super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        PendingOrder(Orders order, List<OrderDetail> orderDetailList) {
+            this.order = order;
+            this.orderDetailList = orderDetailList;
+        }
+
+        boolean claim() {
+            return state.compareAndSet(WAITING, CLAIMED);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.report.ReportRollupCollector;
+import com.sky.stock.DishStockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 订单超时处理：待付款超时自动取消，派送中超时自动完成
+ * 未结束订单的到期时间保存在定时器中，启动时按状态索引重建一次，之后不再扫描订单表；
+ * 到期订单按批条件更新，已付款、已取消等状态变化过的订单不受影响，因此无需精确取消定时器
+ */
+@Component
+@Slf4j
+public class OrderTimeoutProcessor {
+
+    private static final int REBUILD_CHUNK = 10000;
+    private static final long CLOCK_TOLERANCE_SECONDS = 5; //容忍数据库时间精度和节点时钟差异，避免刚到期的订单因条件不满足被漏掉
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderProperties orderProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+    @Autowired
+    private OrderEventBus orderEventBus;
+    @Autowired
+    private DishStockService dishStockService;
+
+    private final Map<OrderTimeoutType, LongAdder> processed = new EnumMap<>(OrderTimeoutType.class);
+    private final LongAdder failures = new LongAdder();
+
+    public OrderTimeoutProcessor() {
+        for (OrderTimeoutType type : OrderTimeoutType.values())
+            processed.put(type, new LongAdder());
+    }
+
+    /**
+     * 新订单已提交，登记付款超时
+     * @param order
+     */
+    public void orderSubmitted(Orders order) {
+        orderTimeoutQueue.schedule(OrderTimeoutType.PAYMENT, order.getId(), deadline(OrderTimeoutType.PAYMENT, order.getOrderTime()));
+    }
+
+    /**
+     * 订单已取消，不再需要付款超时
+     * @param orderId
+     */
+    public void orderCancelled(Long orderId) {
+        orderTimeoutQueue.cancel(OrderTimeoutType.PAYMENT, orderId);
+    }
+
+    /**
+     * 启动后从数据库重建未结束订单的定时器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!orderTimeoutQueue.claimRebuild())
+            return;
+        for (OrderTimeoutType type : OrderTimeoutType.values()) {
+            Map<Long, Long> chunk = new HashMap<>(REBUILD_CHUNK * 2);
+            long[] count = {0};
+            //流式读取期间只写定时器，不在同一连接上执行其他查询
+            orderMapper.streamByStatus(type.getFromStatus(), context -> {
+                Orders order = context.getResultObject();
+                chunk.put(order.getId(), deadline(type, order.getOrderTime()));
+                if (chunk.size() >= REBUILD_CHUNK) {
+                    orderTimeoutQueue.scheduleAll(type, chunk);
+                    count[0] += chunk.size();
+                    chunk.clear();
+                }
+            });
+            orderTimeoutQueue.scheduleAll(type, chunk);
+            count[0] += chunk.size();
+            log.info("订单超时定时器重建完成，类型：{}，订单数：{}", type, count[0]);
+        }
+    }
+
+    /**
+     * 处理已到期的订单
+     */
+    @Scheduled(fixedDelayString = "${sky.order.timeout-poll-ms:1000}")
+    public void process() {
+        for (OrderTimeoutType type : OrderTimeoutType.values()) {
+            List<Long> ids;
+            while (!(ids = orderTimeoutQueue.pollExpired(type, orderProperties.getTimeoutBatchSize())).isEmpty()) {
+                try {
+                    expire(type, ids);
+                    //事务提交后再确认，处理中途宕机的订单会在认领到期后重新处理
+                    orderTimeoutQueue.ack(type, ids);
+                } catch (Exception e) {
+                    failures.increment();
+                    log.error("订单超时处理失败，类型：{}，{}个订单稍后重试：{}", type, ids.size(), e.getMessage());
+                    long retryAt = System.currentTimeMillis() + orderProperties.getTimeoutPollMs();
+                    ids.forEach(id -> orderTimeoutQueue.schedule(type, id, retryAt));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (OrderTimeoutType type : OrderTimeoutType.values()) {
+            String name = type.name().toLowerCase();
+            stats.put(name + "Pending", orderTimeoutQueue.size(type));
+            stats.put(name + "Processed", processed.get(type).sum());
+        }
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private void expire(OrderTimeoutType type, List<Long> ids) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime before = now.minusMinutes(timeoutMinutes(type)).plusSeconds(CLOCK_TOLERANCE_SECONDS);
+        boolean cancel = type == OrderTimeoutType.PAYMENT;
+        Integer count = transactionTemplate.execute(status -> {
+            //锁定后再更新，得到确实发生状态变化的订单，用于报表和推送
+            List<Orders> orders = orderMapper.lockTimeoutOrders(type.getFromStatus(), before, ids);
+            if (orders.isEmpty())
+                return 0;
+            List<Long> lockedIds = orders.stream().map(Orders::getId).collect(Collectors.toList());
+            int rows = orderMapper.updateTimeoutStatus(lockedIds, type.getFromStatus(), type.getToStatus(),
+                    cancel ? MessageConstant.ORDER_PAY_TIMEOUT : null, now);
+            //已加行锁，不应出现；否则回滚稍后重试，避免为未更新的订单归还份数
+            if (rows != orders.size())
+                throw new IllegalStateException("锁定" + orders.size() + "个订单，实际更新" + rows + "个");
+            reportRollupCollector.ordersStatusChanged(orders, type.getToStatus());
+            //只有本次条件更新改为已取消的订单才归还份数，用户同时取消时其条件更新影响0行，不会重复归还
+            if (cancel)
+                dishStockService.ordersCancelled(orders);
+            for (Orders order : orders) {
+                orderEventBus.publish(OrderEvent.builder()
+                        .type(cancel ? OrderEvent.CANCELLED : OrderEvent.COMPLETED)
+                        .orderId(order.getId())
+                        .number(order.getNumber())
+                        .status(type.getToStatus())
+                        .amount(order.getAmount())
+                        .eventTime(now)
+                        .build());
+            }
+            return orders.size();
+        });
+        processed.get(type).add(count == null ? 0 : count);
+    }
+
+    private long deadline(OrderTimeoutType type, LocalDateTime orderTime) {
+        long orderMs = orderTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return orderMs + TimeUnit.MINUTES.toMillis(timeoutMinutes(type));
+    }
+
+    private long timeoutMinutes(OrderTimeoutType type) {
+        return type == OrderTimeoutType.PAYMENT ? orderProperties.getPaymentTimeoutMinutes() : orderProperties.getDeliveryTimeoutMinutes();
+    }
+}
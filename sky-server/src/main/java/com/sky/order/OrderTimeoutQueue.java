@@ -0,0 +1,60 @@
+package com.sky.order;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单超时定时器，按超时类型分别保存订单到期时间
+ */
+public interface OrderTimeoutQueue {
+
+    /**
+     * 登记订单超时时间，已登记时替换
+     * @param type 超时类型
+     * @param orderId
+     * @param deadlineMs 到期时间
+     */
+    void schedule(OrderTimeoutType type, long orderId, long deadlineMs);
+
+    /**
+     * 批量登记，用于启动时重建
+     * @param type
+     * @param deadlines 订单id -> 到期时间
+     */
+    void scheduleAll(OrderTimeoutType type, Map<Long, Long> deadlines);
+
+    /**
+     * 启动时是否由本节点从数据库重建，多节点共享的实现只需一个节点重建
+     * @return
+     */
+    boolean claimRebuild();
+
+    /**
+     * 取消订单超时
+     * @param type
+     * @param orderId
+     */
+    void cancel(OrderTimeoutType type, long orderId);
+
+    /**
+     * 取出已到期的订单，取出后不再重复返回；处理完成后需调用ack，未确认的订单可能在认领到期后再次返回
+     * @param type
+     * @param max 最多取出的数量
+     * @return
+     */
+    List<Long> pollExpired(OrderTimeoutType type, int max);
+
+    /**
+     * 确认已取出的订单处理完成
+     * @param type
+     * @param orderIds
+     */
+    void ack(OrderTimeoutType type, List<Long> orderIds);
+
+    /**
+     * 尚未到期的定时器数量
+     * @param type
+     * @return
+     */
+    long size(OrderTimeoutType type);
+}
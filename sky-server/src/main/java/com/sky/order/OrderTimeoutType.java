@@ -0,0 +1,28 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+
+/**
+ * 订单超时类型
+ */
+public enum OrderTimeoutType {
+
+    PAYMENT(Orders.PENDING_PAYMENT, Orders.CANCELLED), //待付款超时自动取消
+    DELIVERY(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED); //派送中超时自动完成
+
+    private final Integer fromStatus;
+    private final Integer toStatus;
+
+    OrderTimeoutType(Integer fromStatus, Integer toStatus) {
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+    }
+
+    public Integer getFromStatus() {
+        return fromStatus;
+    }
+
+    public Integer getToStatus() {
+        return toStatus;
+    }
+}
@@ -0,0 +1,160 @@
+package com.sky.order;
+
+import com.sky.properties.PayNotifyProperties;
+import com.sky.utils.LocalBloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 支付回调去重
+ * 每条通知先在redis中SETNX占位，处理完成后标记为已处理；重复通知在解密前即可直接应答
+ * 本地布隆过滤器记录本节点处理过的通知，命中时只需一次GET确认，不再尝试占位
+ */
+@Component
+@Slf4j
+public class PayNotifyDeduplicator {
+
+    private static final String KEY = "pay:notify:%s";
+    private static final String PROCESSING = "processing";
+    private static final String DONE = "done";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private PayNotifyProperties payNotifyProperties;
+
+    //两代布隆过滤器轮换，避免无限增长导致误判率上升
+    private volatile LocalBloomFilter current;
+    private volatile LocalBloomFilter previous;
+    private volatile long rotateAt;
+
+    private final LongAdder received = new LongAdder(); //收到的通知数
+    private final LongAdder bloomHits = new LongAdder(); //本地布隆过滤器命中数
+    private final LongAdder duplicates = new LongAdder(); //被拦截的重复通知数
+    private final LongAdder inProgress = new LongAdder(); //其他节点处理中、要求微信稍后重试的通知数
+    private final LongAdder processed = new LongAdder(); //处理完成的通知数
+    private final LongAdder released = new LongAdder(); //处理失败释放占位的通知数
+
+    public enum Claim {
+        CLAIMED, //占位成功，由当前请求处理
+        DUPLICATE, //已处理过，直接应答成功
+        IN_PROGRESS //其他请求正在处理
+    }
+
+    @PostConstruct
+    public void init() {
+        current = newFilter();
+        previous = newFilter();
+        rotateAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(payNotifyProperties.getDoneTtlSeconds());
+    }
+
+    /**
+     * 尝试占有一条通知的处理权
+     * @param notifyId 通知id，同一通知的重试相同；为空时不去重
+     * @return
+     */
+    public Claim claim(String notifyId) {
+        received.increment();
+        if (notifyId == null || notifyId.isEmpty())
+            return Claim.CLAIMED;
+
+        String key = key(notifyId);
+        if (mightContain(notifyId)) {
+            bloomHits.increment();
+            if (DONE.equals(stringRedisTemplate.opsForValue().get(key))) {
+                duplicates.increment();
+                return Claim.DUPLICATE;
+            }
+        }
+
+        Boolean claimed = stringRedisTemplate.opsForValue()
+                .setIfAbsent(key, PROCESSING, payNotifyProperties.getProcessingTtlSeconds(), TimeUnit.SECONDS);
+        if (Boolean.TRUE.equals(claimed))
+            return Claim.CLAIMED;
+
+        if (DONE.equals(stringRedisTemplate.opsForValue().get(key))) {
+            duplicates.increment();
+            remember(notifyId);
+            return Claim.DUPLICATE;
+        }
+        inProgress.increment();
+        return Claim.IN_PROGRESS;
+    }
+
+    /**
+     * 通知处理完成
+     * @param notifyId
+     */
+    public void complete(String notifyId) {
+        processed.increment();
+        if (notifyId == null || notifyId.isEmpty())
+            return;
+        stringRedisTemplate.opsForValue().set(key(notifyId), DONE, payNotifyProperties.getDoneTtlSeconds(), TimeUnit.SECONDS);
+        remember(notifyId);
+    }
+
+    /**
+     * 通知处理失败，释放占位以便微信重试时重新处理
+     * @param notifyId
+     */
+    public void release(String notifyId) {
+        released.increment();
+        if (notifyId == null || notifyId.isEmpty())
+            return;
+        try {
+            stringRedisTemplate.delete(Collections.singletonList(key(notifyId)));
+        } catch (Exception e) {
+            log.warn("释放支付回调占位失败：{}，将在{}s后自动过期，原因：{}", notifyId, payNotifyProperties.getProcessingTtlSeconds(), e.getMessage());
+        }
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("received", received.sum());
+        stats.put("bloomHits", bloomHits.sum());
+        stats.put("duplicatesSuppressed", duplicates.sum());
+        stats.put("inProgress", inProgress.sum());
+        stats.put("processed", processed.sum());
+        stats.put("released", released.sum());
+        return stats;
+    }
+
+    private boolean mightContain(String notifyId) {
+        return current.mightContain(notifyId) || previous.mightContain(notifyId);
+    }
+
+    private void remember(String notifyId) {
+        long now = System.currentTimeMillis();
+        if (now >= rotateAt) {
+            synchronized (this) {
+                if (now >= rotateAt) {
+                    previous = current;
+                    current = newFilter();
+                    rotateAt = now + TimeUnit.SECONDS.toMillis(payNotifyProperties.getDoneTtlSeconds());
+                }
+            }
+        }
+        current.put(notifyId);
+    }
+
+    private LocalBloomFilter newFilter() {
+        return new LocalBloomFilter(payNotifyProperties.getBloomExpectedInsertions(), payNotifyProperties.getBloomFpp());
+    }
+
+    private static String key(String notifyId) {
+        return String.format(KEY, notifyId);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 经redis发布订阅广播订单事件，本节点发布的事件同样从redis收到后再分发，所有节点只有一条分发路径
+ * 发布订阅不持久化，断线期间的事件会丢失，客户端重连后应重新查询订单列表
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order", name = "event-bus", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisOrderEventBus extends AbstractOrderEventBus implements MessageListener {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(orderProperties.getEventChannel()));
+    }
+
+    @Override
+    protected void send(OrderEvent event) {
+        try {
+            stringRedisTemplate.convertAndSend(orderProperties.getEventChannel(), JSON.toJSONString(event));
+        } catch (Exception e) {
+            //推送只是通知，失败不影响订单本身
+            log.warn("订单事件发布失败：{}，原因：{}", event, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        OrderEvent event = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8), OrderEvent.class);
+        if (event != null)
+            dispatch(event);
+    }
+}
@@ -0,0 +1,119 @@
+package com.sky.order;
+
+import com.sky.properties.OrderProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis有序集合保存订单超时，分值为到期时间，多节点共享同一份定时器，到期订单由取到它的节点处理；
+ * 取出时只把分值改为认领到期时间，处理成功后才删除，节点宕机时订单在认领到期后由其他节点重新处理
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order", name = "timeout-mode", havingValue = "redis")
+public class RedisOrderTimeoutQueue implements OrderTimeoutQueue {
+
+    private static final String KEY_PREFIX = "order:timeout:";
+    private static final String REBUILD_LOCK_KEY = "order:timeout:rebuild_lock";
+    private static final RedisScript<List> POLL_SCRIPT = pollScript();
+    private static final RedisScript<Long> ACK_SCRIPT = ackScript();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Override
+    public void schedule(OrderTimeoutType type, long orderId, long deadlineMs) {
+        stringRedisTemplate.opsForZSet().add(key(type), String.valueOf(orderId), deadlineMs);
+    }
+
+    @Override
+    public void scheduleAll(OrderTimeoutType type, Map<Long, Long> deadlines) {
+        if (deadlines.isEmpty())
+            return;
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(deadlines.size() * 2);
+        deadlines.forEach((id, deadline) -> tuples.add(new DefaultTypedTuple<>(String.valueOf(id), deadline.doubleValue())));
+        stringRedisTemplate.opsForZSet().add(key(type), tuples);
+    }
+
+    @Override
+    public boolean claimRebuild() {
+        //锁在重建间隔内有效，期间重启的节点不再重复重建
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(REBUILD_LOCK_KEY, "1",
+                orderProperties.getTimeoutRebuildLockSeconds(), TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked);
+    }
+
+    @Override
+    public void cancel(OrderTimeoutType type, long orderId) {
+        stringRedisTemplate.opsForZSet().remove(key(type), String.valueOf(orderId));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> pollExpired(OrderTimeoutType type, int max) {
+        long now = System.currentTimeMillis();
+        List<Object> members = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(key(type)),
+                String.valueOf(now), String.valueOf(max), String.valueOf(now + claimMs()));
+        if (members == null || members.isEmpty())
+            return Collections.emptyList();
+        List<Long> ids = new ArrayList<>(members.size());
+        for (Object member : members)
+            ids.add(Long.valueOf(member.toString()));
+        return ids;
+    }
+
+    @Override
+    public void ack(OrderTimeoutType type, List<Long> orderIds) {
+        if (orderIds.isEmpty())
+            return;
+        //认领后未再登记的订单分值不会超过 当前时间+认领时长
+        List<String> args = new ArrayList<>(orderIds.size() + 1);
+        args.add(String.valueOf(System.currentTimeMillis() + claimMs()));
+        orderIds.forEach(id -> args.add(String.valueOf(id)));
+        stringRedisTemplate.execute(ACK_SCRIPT, Collections.singletonList(key(type)), args.toArray());
+    }
+
+    @Override
+    public long size(OrderTimeoutType type) {
+        Long size = stringRedisTemplate.opsForZSet().zCard(key(type));
+        return size == null ? 0 : size;
+    }
+
+    private long claimMs() {
+        return TimeUnit.SECONDS.toMillis(orderProperties.getTimeoutClaimSeconds());
+    }
+
+    private static String key(OrderTimeoutType type) {
+        return KEY_PREFIX + type.name().toLowerCase();
+    }
+
+    private static RedisScript<List> pollScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("lua/timeout_poll.lua"));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    private static RedisScript<Long> ackScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("lua/timeout_ack.lua"));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
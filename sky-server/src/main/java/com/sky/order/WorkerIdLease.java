@@ -0,0 +1,147 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.OrderProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单号生成器及其节点id
+ * 配置了sky.order.worker-id时直接使用；否则从redis租用一个空闲id，定时续约，停机时释放。
+ * 租约丢失(被其他节点占用)或本地计时已过租期时停止生成订单号，下单失败，直到重新租到节点id
+ */
+@Component
+@Slf4j
+public class WorkerIdLease {
+
+    private static final String KEY = "order:worker:%d";
+    private static final RedisScript<Long> RENEW_SCRIPT = renewScript();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private final String owner = UUID.randomUUID().toString(); //当前节点标识
+    private volatile SnowflakeIdGenerator generator; //未持有节点id时为null
+    private volatile long leaseDeadline; //本地计算的租约到期时间(System.nanoTime)，到期前未续约成功则停止生成
+    private boolean leased;
+
+    @PostConstruct
+    public void init() {
+        if (orderProperties.getWorkerId() >= 0) {
+            generator = new SnowflakeIdGenerator(orderProperties.getWorkerId());
+            log.info("订单号节点id使用配置值：{}", orderProperties.getWorkerId());
+            return;
+        }
+        leased = true;
+        if (!acquire())
+            throw new IllegalStateException("没有可用的订单号节点id");
+    }
+
+    /**
+     * 生成订单号
+     * @return
+     */
+    public long nextId() {
+        SnowflakeIdGenerator current = generator;
+        if (current == null || leased && System.nanoTime() - leaseDeadline >= 0) {
+            log.error("订单号节点id租约无效，暂停下单");
+            throw new OrderBusinessException(MessageConstant.ORDER_NUMBER_UNAVAILABLE);
+        }
+        return current.nextId();
+    }
+
+    /**
+     * 续约，间隔为租期的1/3；租约丢失后改为重新租用
+     */
+    @Scheduled(fixedDelayString = "#{${sky.order.worker-lease-seconds:60} * 1000 / 3}")
+    public void renew() {
+        if (!leased)
+            return;
+        try {
+            SnowflakeIdGenerator current = generator;
+            if (current == null) {
+                if (acquire())
+                    log.info("订单号节点id已重新租用：{}，恢复下单", generator.getWorkerId());
+                return;
+            }
+
+            long start = System.nanoTime();
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key(current.getWorkerId())),
+                    owner, String.valueOf(orderProperties.getWorkerLeaseSeconds()));
+            if (renewed != null && renewed == 1) {
+                leaseDeadline = start + TimeUnit.SECONDS.toNanos(orderProperties.getWorkerLeaseSeconds());
+                return;
+            }
+
+            //租约已过期或被其他节点占用，期间其他节点可能使用了同一id，不能再用它生成订单号
+            generator = null;
+            log.error("订单号节点id：{}的租约已丢失，暂停下单并重新租用", current.getWorkerId());
+            if (acquire())
+                log.info("订单号节点id已重新租用：{}，恢复下单", generator.getWorkerId());
+        } catch (Exception e) {
+            //redis不可用时保留当前租约，超过本地租期后nextId自动停止生成
+            log.warn("订单号节点id续约失败，原因：{}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        SnowflakeIdGenerator current = generator;
+        if (!leased || current == null)
+            return;
+        generator = null;
+        //只释放自己持有的租约
+        String key = key(current.getWorkerId());
+        if (owner.equals(stringRedisTemplate.opsForValue().get(key)))
+            stringRedisTemplate.delete(Collections.singletonList(key));
+    }
+
+    public long getWorkerId() {
+        SnowflakeIdGenerator current = generator;
+        return current == null ? -1 : current.getWorkerId();
+    }
+
+    //从0开始找一个空闲的节点id
+    private boolean acquire() {
+        long ttl = orderProperties.getWorkerLeaseSeconds();
+        for (long id = 0; id <= SnowflakeIdGenerator.MAX_WORKER_ID; id++) {
+            long start = System.nanoTime();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key(id), owner, ttl, TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                leaseDeadline = start + TimeUnit.SECONDS.toNanos(ttl);
+                generator = new SnowflakeIdGenerator(id);
+                log.info("订单号节点id租用成功：{}", id);
+                return true;
+            }
+        }
+        log.error("没有可用的订单号节点id");
+        return false;
+    }
+
+    private static String key(long id) {
+        return String.format(KEY, id);
+    }
+
+    private static RedisScript<Long> renewScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("lua/worker_lease_renew.lua"));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
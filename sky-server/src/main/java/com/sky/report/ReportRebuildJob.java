@@ -0,0 +1,57 @@
+package com.sky.report;
+
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每日按明细重建最近几天的报表汇总，修正进程异常退出时丢失的增量；多节点部署时只由一个节点执行
+ * 另外定时重建本节点上有变化的以前日期(跨零点后的取消、完成等)，这些变化不走增量
+ */
+@Component
+@Slf4j
+public class ReportRebuildJob {
+
+    private static final String LOCK_KEY = "report:rebuild_lock";
+    private static final long LOCK_HOURS = 1;
+
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+
+    @Scheduled(cron = "${sky.report.rebuild-cron:0 30 3 * * ?}")
+    public void rebuildRecentDays() {
+        LocalDate today = LocalDate.now();
+        //锁按日期区分，到期自动释放，当天其他节点不再重复执行
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, today.toString(), LOCK_HOURS, TimeUnit.HOURS);
+        if (!Boolean.TRUE.equals(locked))
+            return;
+
+        int days = reportService.rebuild(today.minusDays(reportProperties.getRebuildDays()), today.minusDays(1));
+        log.info("每日重建报表汇总完成，共{}天", days);
+    }
+
+    @Scheduled(fixedDelayString = "${sky.report.changed-day-rebuild-interval-ms:60000}")
+    public void rebuildChangedDays() {
+        for (LocalDate day : reportRollupCollector.drainChangedDays()) {
+            try {
+                reportService.rebuild(day, day);
+            } catch (Exception e) {
+                log.error("重建有变化的报表日期失败：{}，稍后重试：{}", day, e.getMessage());
+                reportRollupCollector.markChanged(day);
+            }
+        }
+    }
+}
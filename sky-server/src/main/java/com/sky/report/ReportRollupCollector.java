@@ -0,0 +1,294 @@
+package com.sky.report;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ReportDishDaily;
+import com.sky.entity.ReportHourly;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.ReportMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 报表增量收集
+ * 订单、用户变化时只在内存中按小时累加，定时合并写入汇总表，每小时每节点每次只更新一行，不与下单争抢同一行锁；
+ * 进程异常退出丢失的增量由每日重建修正。
+ * 以前日期的变化(如跨零点后超时取消、自动完成)不累加增量，只标记该日期，由ReportRebuildJob按明细重建当天，
+ * 避免增量与重建重复计数或被重建覆盖；重建通过fenced与增量写入互斥，重建前先写完已累积的增量
+ */
+@Component
+@Slf4j
+public class ReportRollupCollector {
+
+    @Autowired
+    private ReportMapper reportMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    private final ConcurrentMap<HourKey, Delta> hourly = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DishKey, Integer> dishDaily = new ConcurrentHashMap<>();
+    private final Set<LocalDate> changedDays = ConcurrentHashMap.newKeySet(); //有变化、待按明细重建的以前日期
+    private final ReentrantLock flushLock = new ReentrantLock(); //增量写入与重建互斥
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    /**
+     * 订单已入库
+     * @param order
+     */
+    public void orderCreated(Orders order) {
+        BigDecimal turnover = Orders.COMPLETED.equals(order.getStatus()) ? order.getAmount() : BigDecimal.ZERO;
+        int valid = Orders.COMPLETED.equals(order.getStatus()) ? 1 : 0;
+        afterCommit(() -> add(order.getOrderTime(), new Delta(turnover, 1, valid, 0)));
+    }
+
+    /**
+     * 订单状态变化，只有进入或离开已完成状态时影响营业额、有效订单和销量
+     * @param order 变化前的订单
+     * @param newStatus 新状态
+     */
+    public void orderStatusChanged(Orders order, Integer newStatus) {
+        ordersStatusChanged(Collections.singletonList(order), newStatus);
+    }
+
+    /**
+     * 一批订单变为同一新状态，受影响订单的明细一次查出
+     * @param orders 变化前的订单
+     * @param newStatus 新状态
+     */
+    public void ordersStatusChanged(List<Orders> orders, Integer newStatus) {
+        boolean isCompleted = Orders.COMPLETED.equals(newStatus);
+        List<Orders> affected = orders.stream()
+                .filter(order -> Orders.COMPLETED.equals(order.getStatus()) != isCompleted)
+                .collect(Collectors.toList());
+        if (affected.isEmpty())
+            return;
+
+        int sign = isCompleted ? 1 : -1;
+        Map<Long, List<OrderDetail>> details = orderDetailMapper
+                .getByOrderIds(affected.stream().map(Orders::getId).collect(Collectors.toList()), null)
+                .stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+        afterCommit(() -> {
+            for (Orders order : affected) {
+                BigDecimal amount = order.getAmount() == null ? BigDecimal.ZERO : order.getAmount();
+                add(order.getOrderTime(), new Delta(sign > 0 ? amount : amount.negate(), 0, sign, 0));
+                LocalDate date = order.getOrderTime().toLocalDate();
+                if (isPast(date))
+                    continue;
+                for (OrderDetail detail : details.getOrDefault(order.getId(), Collections.emptyList()))
+                    dishDaily.merge(new DishKey(date, detail.getName()), sign * detail.getNumber(), Integer::sum);
+            }
+        });
+    }
+
+    /**
+     * 新用户已注册
+     * @param createTime
+     */
+    public void userCreated(LocalDateTime createTime) {
+        LocalDateTime time = createTime == null ? LocalDateTime.now() : createTime;
+        afterCommit(() -> add(time, new Delta(BigDecimal.ZERO, 0, 0, 1)));
+    }
+
+    /**
+     * 把累积的增量写入汇总表，写入失败的增量放回继续累积
+     */
+    @Scheduled(fixedDelayString = "${sky.report.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 在与增量写入互斥的情况下执行重建：先写完已累积的增量，重建期间不再写入增量
+     * @param rebuild
+     * @return
+     */
+    public <T> T fenced(Supplier<T> rebuild) {
+        flushLock.lock();
+        try {
+            doFlush();
+            return rebuild.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 取出有变化、待重建的以前日期
+     * @return 按日期排序
+     */
+    public Set<LocalDate> drainChangedDays() {
+        Set<LocalDate> days = new TreeSet<>();
+        for (LocalDate day : changedDays) {
+            if (changedDays.remove(day))
+                days.add(day);
+        }
+        return days;
+    }
+
+    /**
+     * 重建失败的日期放回，下次重试
+     * @param day
+     */
+    public void markChanged(LocalDate day) {
+        changedDays.add(day);
+    }
+
+    private void doFlush() {
+        List<ReportHourly> hourlyDeltas = new ArrayList<>();
+        for (HourKey key : hourly.keySet()) {
+            Delta delta = hourly.remove(key);//remove与merge互斥，取出后的增量不会再被修改
+            if (delta != null)
+                hourlyDeltas.add(delta.toEntity(key));
+        }
+        List<ReportDishDaily> dishDeltas = new ArrayList<>();
+        for (DishKey key : dishDaily.keySet()) {
+            Integer number = dishDaily.remove(key);
+            if (number != null && number != 0)
+                dishDeltas.add(new ReportDishDaily(key.getReportDate(), key.getName(), number));
+        }
+
+        if (!hourlyDeltas.isEmpty()) {
+            try {
+                reportMapper.addHourly(hourlyDeltas);
+                flushedRows.add(hourlyDeltas.size());
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("报表小时汇总写入失败，{}条增量稍后重试：{}", hourlyDeltas.size(), e.getMessage());
+                hourlyDeltas.forEach(d -> add(d.getReportDate(), d.getReportHour(), Delta.of(d)));
+            }
+        }
+        if (!dishDeltas.isEmpty()) {
+            try {
+                reportMapper.addDishDaily(dishDeltas);
+                flushedRows.add(dishDeltas.size());
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("报表商品销量写入失败，{}条增量稍后重试：{}", dishDeltas.size(), e.getMessage());
+                dishDeltas.forEach(d -> {
+                    if (isPast(d.getReportDate()))
+                        changedDays.add(d.getReportDate());
+                    else
+                        dishDaily.merge(new DishKey(d.getReportDate(), d.getName()), d.getNumber(), Integer::sum);
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pendingHours", (long) hourly.size());
+        stats.put("pendingDishes", (long) dishDaily.size());
+        stats.put("changedDays", (long) changedDays.size());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    private void add(LocalDateTime time, Delta delta) {
+        add(time.toLocalDate(), time.getHour(), delta);
+    }
+
+    //以前日期的变化只做标记，由重建按明细统计
+    private void add(LocalDate date, int hour, Delta delta) {
+        if (isPast(date))
+            changedDays.add(date);
+        else
+            hourly.merge(new HourKey(date, hour), delta, Delta::plus);
+    }
+
+    private static boolean isPast(LocalDate date) {
+        return date.isBefore(LocalDate.now());
+    }
+
+    //在事务中时等提交后再累加，回滚的变化不计入报表
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class HourKey {
+        private LocalDate reportDate;
+        private Integer reportHour;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class DishKey {
+        private LocalDate reportDate;
+        private String name;
+    }
+
+    /**
+     * 不可变的增量，合并时生成新对象
+     */
+    @AllArgsConstructor
+    private static final class Delta {
+        private final BigDecimal turnover;
+        private final int orderCount;
+        private final int validOrderCount;
+        private final int newUserCount;
+
+        static Delta of(ReportHourly entity) {
+            return new Delta(entity.getTurnover(), entity.getOrderCount(), entity.getValidOrderCount(), entity.getNewUserCount());
+        }
+
+        Delta plus(Delta other) {
+            return new Delta(turnover.add(other.turnover), orderCount + other.orderCount,
+                    validOrderCount + other.validOrderCount, newUserCount + other.newUserCount);
+        }
+
+        ReportHourly toEntity(HourKey key) {
+            return new ReportHourly(key.getReportDate(), key.getReportHour(), turnover, orderCount, validOrderCount, newUserCount);
+        }
+    }
+}
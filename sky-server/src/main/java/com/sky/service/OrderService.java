@@ -1,9 +1,12 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.vo.*;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface OrderService {
 
     /**
@@ -20,11 +23,19 @@ public interface OrderService {
      */
     OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception;
 
+    /**
+     * 订单支付，调用微信支付接口时不占用请求线程
+     * @param ordersPaymentDTO
+     * @return
+     */
+    CompletableFuture<OrderPaymentVO> paymentAsync(OrdersPaymentDTO ordersPaymentDTO);
+
     /**
      * 支付成功，修改订单状态
      * @param outTradeNo
+     * @param transactionId
      */
-    void paySuccess(String outTradeNo);
+    void paySuccess(String outTradeNo, String transactionId);
 
         /**
      * 用户端订单分页查询
@@ -35,6 +46,20 @@ public interface OrderService {
      */
     PageResult pageQuery4User(int page, int pageSize, Integer status);
 
+    /**
+     * 用户端订单游标分页查询
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    CursorPageResult cursorQuery4User(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
+    /**
+     * 订单游标分页条件搜索
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    CursorPageResult cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
     /**
      * 查询订单详情
      * @param id
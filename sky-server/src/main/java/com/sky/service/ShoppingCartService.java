@@ -28,4 +28,23 @@ public interface ShoppingCartService {
      * 清空购物车商品
      */
     void cleanShoppingCart();
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> listByUserId(Long userId);
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    void cleanByUserId(Long userId);
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    void addBatch(List<ShoppingCart> shoppingCartList);
 }
\ No newline at end of file
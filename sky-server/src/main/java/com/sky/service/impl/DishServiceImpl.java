@@ -3,6 +3,7 @@ package com.sky.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCacheInvalidator;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -23,7 +24,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -37,6 +41,8 @@ public class DishServiceImpl implements DishService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuCacheInvalidator menuCacheInvalidator;
     /**
      * 新增菜品和对应的口味
      *
@@ -62,6 +68,8 @@ public class DishServiceImpl implements DishService {
             //向口味表插入n条数据
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        menuCacheInvalidator.dishCategoryChanged(dish.getCategoryId());//清理该分类的C端菜品缓存
     }
 
     /**
@@ -87,6 +95,7 @@ public class DishServiceImpl implements DishService {
 
     /**
      * 菜品批量删除
+     * 只能删除停售菜品，停售菜品不在C端缓存中，无需清理缓存
      *
      * @param ids
      */
@@ -141,7 +150,9 @@ public class DishServiceImpl implements DishService {
      *
      * @param dishDTO
      */
+    @Transactional
     public void updateWithFlavor(DishDTO dishDTO) {
+        Dish dishDB = dishMapper.selectById(dishDTO.getId());//修改前的菜品，用于清理原分类的缓存
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO, dish);
         dishMapper.updateById(dish);//根据菜品id修改菜品数据
@@ -155,6 +166,11 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);//向口味表插入n条数据
         }
+
+        //菜品可能被移到其他分类，新旧分类的缓存都要清理
+        if (dishDB != null)
+            menuCacheInvalidator.dishCategoryChanged(dishDB.getCategoryId());
+        menuCacheInvalidator.dishCategoryChanged(dishDTO.getCategoryId());
     }
 
     /**
@@ -166,14 +182,21 @@ public class DishServiceImpl implements DishService {
     @Transactional
     public void startOrStop(Integer status, Long id) {
         dishMapper.updateById(Dish.builder().status(status).id(id).build());//菜品状态更改
+        Dish dish = dishMapper.selectById(id);
+        if (dish != null)
+            menuCacheInvalidator.dishCategoryChanged(dish.getCategoryId());
 //        dishMapper.update(null, new LambdaUpdateWrapper<Dish>()
 //                .eq(Dish::getId, id)
 //                .set(Dish::getStatus, status));
         if (status == StatusConstant.DISABLE) {//如果是停售操作，包含该菜品的套餐也要停售
             List<SetmealDish> setmealDishList = setmealDishMapper.selectList(new LambdaQueryWrapper<SetmealDish>().in(SetmealDish::getDishId, id));//查询含有该菜品的的套餐数据
             if (!setmealDishList.isEmpty())
-                for (SetmealDish setmealDish : setmealDishList)
+                for (SetmealDish setmealDish : setmealDishList) {
                     setmealMapper.updateById(Setmeal.builder().status(status).id(setmealDish.getSetmealId()).build());//套餐状态更改
+                    Setmeal setmeal = setmealMapper.selectById(setmealDish.getSetmealId());
+                    if (setmeal != null)
+                        menuCacheInvalidator.setmealCategoryChanged(setmeal.getCategoryId());
+                }
         }
     }
 
@@ -190,15 +213,20 @@ public class DishServiceImpl implements DishService {
                 .eq(dish.getCategoryId()!=null,Dish::getCategoryId, dish.getCategoryId())
                 .eq(dish.getStatus()!=null,Dish::getStatus, dish.getStatus()));
 
-        List<DishVO> dishVOList = new ArrayList<>();
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
+        if (dishList.isEmpty())
+            return dishVOList;
+
+        //一次查出所有菜品的口味，再按dish_id分组，避免每个菜品查询一次
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = new HashMap<>();
+        for (DishFlavor flavor : dishFlavorMapper.selectByDishIds(dishIds))
+            flavorMap.computeIfAbsent(flavor.getDishId(), k -> new ArrayList<>()).add(flavor);
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
-            //根据dish的id(对应口味表中dish_id)查询菜品对应口味数据
-            List<DishFlavor> dishFlavors = dishFlavorMapper.selectList(new LambdaQueryWrapper<DishFlavor>().eq(DishFlavor::getDishId, d.getId()));
-
-            dishVO.setFlavors(dishFlavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
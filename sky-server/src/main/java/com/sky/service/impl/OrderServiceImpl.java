@@ -2,7 +2,6 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
@@ -13,25 +12,45 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.OrderEvent;
+import com.sky.order.OrderEventBus;
+import com.sky.order.OrderSubmitBatcher;
+import com.sky.order.OrderTimeoutProcessor;
+import com.sky.order.WorkerIdLease;
+import com.sky.properties.OrderProperties;
+import com.sky.report.ReportRollupCollector;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.stock.DishStockService;
+import com.sky.upstream.UpstreamBulkhead;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -45,21 +64,42 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderDetailMapper orderDetailMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
     @Autowired
     private UserMapper userMapper;
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
     private WeChatPayUtil weChatPayUtil;
+    @Autowired
+    private OrderProperties orderProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired(required = false)
+    private OrderSubmitBatcher orderSubmitBatcher;
+    @Autowired
+    private WorkerIdLease orderNumberGenerator;
+    @Autowired
+    private UpstreamBulkhead upstreamBulkhead;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+    @Autowired
+    private OrderEventBus orderEventBus;
+    @Autowired
+    private OrderTimeoutProcessor orderTimeoutProcessor;
+    @Autowired
+    private DishStockService dishStockService;
+    @Autowired
+    private PayReconciliationMapper payReconciliationMapper;
 
     /**
      * 用户下单
+     * 地址和购物车的查询不在事务中，只有写入订单和明细时才占用连接；
+     * batch模式下写入交给组提交，多个订单共用一个事务
      *
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         //异常情况的处理（收货地址为空、购物车为空）
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
@@ -68,11 +108,9 @@ public class OrderServiceImpl implements OrderService {
         }
 
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
 
         //查询当前用户的购物车数据
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.listByUserId(userId);
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
@@ -83,29 +121,71 @@ public class OrderServiceImpl implements OrderService {
         order.setPhone(addressBook.getPhone());
         order.setAddress(addressBook.getDetail());
         order.setConsignee(addressBook.getConsignee());
-        order.setNumber(String.valueOf(System.currentTimeMillis()));
+        order.setNumber(String.valueOf(orderNumberGenerator.nextId()));
         order.setUserId(userId);
         order.setStatus(Orders.PENDING_PAYMENT);
         order.setPayStatus(Orders.UN_PAID);
         order.setOrderTime(LocalDateTime.now());
 
-        //向订单表插入1条数据
-        orderMapper.insert(order);
-
         //订单明细数据
         List<OrderDetail> orderDetailList = new ArrayList<>();
         for (ShoppingCart cart : shoppingCartList) {
             OrderDetail orderDetail = new OrderDetail();
             BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(order.getId());
             orderDetailList.add(orderDetail);
         }
 
-        //向明细表插入n条数据
-        orderDetailMapper.insertBatch(orderDetailList);
+        //预占限量菜品的当日份数，售罄时直接拒绝
+        LocalDate orderDate = order.getOrderTime().toLocalDate();
+        Map<Long, Integer> reserved = dishStockService.reserve(shoppingCartList, orderDate);
+
+        if (orderSubmitBatcher != null) {
+            CompletableFuture<Orders> future;
+            try {
+                future = orderSubmitBatcher.submit(order, orderDetailList);
+            } catch (RuntimeException e) {
+                dishStockService.release(reserved, orderDate);
+                throw e;
+            }
+            //批次失败或等待超时被取消时归还
+            future.whenComplete((saved, e) -> {
+                if (e != null)
+                    dishStockService.release(reserved, orderDate);
+            });
+            //等待所在批次提交，期间不占用数据库连接；报失败时订单一定不会入库，购物车保留
+            awaitBatch(future);
+            shoppingCartService.cleanByUserId(userId);
+        } else {
+            try {
+                transactionTemplate.execute(status -> {
+                    //向订单表插入1条数据
+                    orderMapper.insert(order);
+
+                    //向明细表插入n条数据
+                    orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(order.getId()));
+                    orderDetailMapper.insertBatch(orderDetailList);
+
+                    //清理购物车中的数据
+                    shoppingCartService.cleanByUserId(userId);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                dishStockService.release(reserved, orderDate);
+                throw e;
+            }
+        }
 
-        //清理购物车中的数据
-        shoppingCartMapper.delete(new LambdaQueryWrapper<ShoppingCart>().eq(ShoppingCart::getUserId, BaseContext.getCurrentId()));
+        //订单已提交，计入报表
+        reportRollupCollector.orderCreated(order);
+        orderTimeoutProcessor.orderSubmitted(order);
+        orderEventBus.publish(OrderEvent.builder()
+                .type(OrderEvent.SUBMITTED)
+                .orderId(order.getId())
+                .number(order.getNumber())
+                .status(order.getStatus())
+                .amount(order.getAmount())
+                .eventTime(order.getOrderTime())
+                .build());
 
         //封装返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -118,6 +198,30 @@ public class OrderServiceImpl implements OrderService {
         return orderSubmitVO;
     }
 
+    private void awaitBatch(CompletableFuture<Orders> future) {
+        try {
+            future.get(orderProperties.getSubmitTimeoutMs(), TimeUnit.MILLISECONDS);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("组提交下单失败：{}", e.getCause().getMessage());
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_FAILED);
+        } catch (TimeoutException e) {
+            log.warn("组提交下单等待超时，尝试取消");
+        }
+
+        //超时或被中断：订单还在队列中时取消，不会再入库；已被认领的正在写入，等待其结果，不能报失败后又入库
+        if (future.cancel(false))
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_FAILED);
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            log.error("组提交下单失败：{}", e.getCause().getMessage());
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_FAILED);
+        }
+    }
+
     /**
      * 订单支付
      *
@@ -137,6 +241,31 @@ public class OrderServiceImpl implements OrderService {
                 user.getOpenid() //微信用户的openid
         );
 
+        return toPaymentVO(jsonObject);
+    }
+
+    /**
+     * 订单支付，调用微信支付接口在外部接口线程池中执行
+     *
+     * @param ordersPaymentDTO
+     * @return
+     */
+    public CompletableFuture<OrderPaymentVO> paymentAsync(OrdersPaymentDTO ordersPaymentDTO) {
+        // 当前登录用户id，需在请求线程中获取
+        Long userId = BaseContext.getCurrentId();
+        User user = userMapper.selectById(userId);
+
+        //调用微信支付接口，生成预支付交易单
+        return weChatPayUtil.payAsync(
+                ordersPaymentDTO.getOrderNumber(), //商户订单号
+                new BigDecimal(0.01), //支付金额，单位 元
+                "苍穹外卖订单", //商品描述
+                user.getOpenid(), //微信用户的openid
+                upstreamBulkhead.executor()
+        ).thenApply(this::toPaymentVO);
+    }
+
+    private OrderPaymentVO toPaymentVO(JSONObject jsonObject) {
         if (jsonObject.getString("code") != null && jsonObject.getString("code").equals("ORDERPAID")) {
             throw new OrderBusinessException("该订单已支付");
         }
@@ -151,21 +280,82 @@ public class OrderServiceImpl implements OrderService {
      * 支付成功，修改订单状态
      *
      * @param outTradeNo
+     * @param transactionId
      */
-    public void paySuccess(String outTradeNo) {
+    public void paySuccess(String outTradeNo, String transactionId) {
+        // 只有待付款的订单才更新为待接单，重复通知或已取消的订单不受影响
+        LocalDateTime checkoutTime = LocalDateTime.now();
+        int rows = orderMapper.updateStatusByNumber(outTradeNo, Orders.PENDING_PAYMENT,
+                Orders.TO_BE_CONFIRMED, Orders.PAID, checkoutTime);
+        if (rows == 0) {
+            Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+            //订单已取消(如支付超时)后才收到支付成功，钱已扣但订单不会再处理，登记对账并退款
+            if (ordersDB != null && Orders.CANCELLED.equals(ordersDB.getStatus())
+                    && Orders.UN_PAID.equals(ordersDB.getPayStatus())) {
+                log.error("订单已取消后收到支付成功通知，登记对账并退款：{}，微信支付交易号：{}", outTradeNo, transactionId);
+                refundCancelled(ordersDB, transactionId, MessageConstant.ORDER_PAID_AFTER_CANCEL);
+                return;
+            }
+            log.info("订单不是待付款状态，忽略支付成功通知：{}", outTradeNo);
+            return;
+        }
+        //通知商家端有新的待接单订单，与其他订单事件一样带上订单id和金额
+        Orders paid = orderMapper.getByNumber(outTradeNo);
+        orderEventBus.publish(OrderEvent.builder()
+                .type(OrderEvent.PAID)
+                .orderId(paid.getId())
+                .number(outTradeNo)
+                .status(Orders.TO_BE_CONFIRMED)
+                .amount(paid.getAmount())
+                .eventTime(checkoutTime)
+                .build());
+    }
 
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+    /**
+     * 已取消的已付款订单退款：登记对账记录后发起退款
+     * 同一订单只登记、退款一次；退款失败时记录原因留待人工处理，不抛出，订单保持已取消
+     *
+     * @param ordersDB
+     * @param transactionId 微信支付交易号，未知时为null
+     * @param reason 登记原因
+     */
+    private void refundCancelled(Orders ordersDB, String transactionId, String reason) {
+        String number = ordersDB.getNumber();
+        LocalDateTime now = LocalDateTime.now();
+        int inserted = payReconciliationMapper.insertIgnore(PayReconciliation.builder()
+                .orderNumber(number)
+                .transactionId(transactionId)
+                .orderStatus(ordersDB.getStatus())
+                .reason(reason)
+                .status(PayReconciliation.PENDING)
+                .createTime(now)
+                .updateTime(now)
+                .build());
+        if (inserted == 0) {
+            log.info("订单已登记对账，不再重复退款：{}", number);
+            return;
+        }
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
-        Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
-                .payStatus(Orders.PAID)
-                .checkoutTime(LocalDateTime.now())
-                .build();
+        try {
+            //调用微信支付退款接口
+            weChatPayUtil.refund(
+                    number, //商户订单号
+                    number, //商户退款单号
+                    new BigDecimal(0.01),//退款金额，单位 元
+                    new BigDecimal(0.01));//原订单金额
+        } catch (Exception e) {
+            log.error("已取消订单退款失败，需人工处理：{}", number, e);
+            payReconciliationMapper.updateStatus(number, PayReconciliation.REFUND_FAILED,
+                    StringUtils.abbreviate(String.valueOf(e.getMessage()), 255), LocalDateTime.now());
+            return;
+        }
 
+        //支付状态修改为 退款
+        Orders orders = new Orders();
+        orders.setId(ordersDB.getId());
+        orders.setPayStatus(Orders.REFUND);
         orderMapper.update(orders);
+        payReconciliationMapper.updateStatus(number, PayReconciliation.REFUNDING, null, LocalDateTime.now());
     }
 
     /**
@@ -187,24 +377,96 @@ public class OrderServiceImpl implements OrderService {
         // 分页条件查询
         Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
 
-        List<OrderVO> list = new ArrayList();
-
         // 查询出订单明细，并封装入OrderVO进行响应
-        if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
+        List<OrderVO> list = page == null ? new ArrayList<>() : toOrderVOList(page);
+        return new PageResult(page.getTotal(), list);
+    }
+
+    /**
+     * 用户端订单游标分页查询
+     *
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    public CursorPageResult cursorQuery4User(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        ordersCursorQueryDTO.setUserId(BaseContext.getCurrentId());//只能查询自己的订单
+        return cursorQuery(ordersCursorQueryDTO);
+    }
 
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+    /**
+     * 订单游标分页条件搜索
+     *
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    public CursorPageResult cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        int pageSize = ordersCursorQueryDTO.getPageSize() <= 0
+                ? orderProperties.getCursorMaxPageSize()
+                : Math.min(ordersCursorQueryDTO.getPageSize(), orderProperties.getCursorMaxPageSize());
+
+        LocalDateTime lastOrderTime = null;
+        Long lastId = null;
+        String cursor = ordersCursorQueryDTO.getCursor();
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] position = decodeCursor(cursor);
+            lastOrderTime = LocalDateTime.parse(position[0]);
+            lastId = Long.valueOf(position[1]);
+        }
 
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+        // 多查一条用于判断是否还有下一页，不再统计总数
+        List<Orders> ordersList = orderMapper.cursorQuery(ordersCursorQueryDTO, lastOrderTime, lastId, pageSize + 1);
+        boolean hasMore = ordersList.size() > pageSize;
+        if (hasMore)
+            ordersList = ordersList.subList(0, pageSize);
 
-                list.add(orderVO);
-            }
+        String nextCursor = null;
+        if (hasMore) {
+            Orders last = ordersList.get(ordersList.size() - 1);
+            nextCursor = encodeCursor(last.getOrderTime(), last.getId());
+        }
+        Long total = ordersCursorQueryDTO.isWithTotal() ? orderMapper.countByCondition(ordersCursorQueryDTO) : null;
+        return new CursorPageResult(toOrderVOList(ordersList), nextCursor, hasMore, total);
+    }
+
+    /**
+     * 一次查出所有订单的明细，按订单id分组后封装入OrderVO
+     */
+    private List<OrderVO> toOrderVOList(List<Orders> ordersList) {
+        List<OrderVO> list = new ArrayList<>(ordersList.size());
+        if (ordersList.isEmpty())
+            return list;
+
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        Map<Long, List<OrderDetail>> detailMap = new HashMap<>();
+        for (OrderDetail orderDetail : orderDetailMapper.getByOrderIds(orderIds, orderProperties.getHistoryDetailLimit()))
+            detailMap.computeIfAbsent(orderDetail.getOrderId(), k -> new ArrayList<>()).add(orderDetail);
+
+        for (Orders orders : ordersList) {
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(orders, orderVO);
+            orderVO.setOrderDetailList(detailMap.getOrDefault(orders.getId(), new ArrayList<>()));
+
+            list.add(orderVO);
+        }
+        return list;
+    }
+
+    //游标内容为 下单时间|订单id，经base64编码后对前端不透明
+    private static String encodeCursor(LocalDateTime orderTime, Long id) {
+        String position = orderTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|");
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (RuntimeException e) {
+            throw new OrderBusinessException(MessageConstant.ORDER_CURSOR_INVALID);
         }
-        return new PageResult(page.getTotal(), list);
     }
 
 
@@ -247,27 +509,31 @@ public class OrderServiceImpl implements OrderService {
         if (ordersDB.getStatus() > 2)
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
 
-        Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-
-        // 订单处于待接单状态下取消，需要进行退款
-        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
-            weChatPayUtil.refund(
-                    ordersDB.getNumber(), //商户订单号
-                    ordersDB.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
-
-            //支付状态修改为 退款
-            orders.setPayStatus(Orders.REFUND);
+        // 仅当订单仍是读取时的状态才取消，与支付成功、超时取消的条件更新互斥
+        LocalDateTime cancelTime = LocalDateTime.now();
+        int rows = orderMapper.cancelIfStatus(ordersDB.getId(), ordersDB.getStatus(), "用户取消", cancelTime);
+        if (rows == 0) {
+            Orders current = orderMapper.getById(id);
+            log.info("订单状态已变化，取消失败：{}，读取时状态：{}，当前状态：{}", ordersDB.getNumber(), ordersDB.getStatus(),
+                    current == null ? null : current.getStatus());
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        // 更新订单状态、取消原因、取消时间
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelReason("用户取消");
-        orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        // 订单处于待接单状态下取消，需要进行退款
+        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED))
+            refundCancelled(ordersDB, null, MessageConstant.ORDER_USER_CANCEL_REFUND);
+
+        reportRollupCollector.orderStatusChanged(ordersDB, Orders.CANCELLED);
+        orderEventBus.publish(OrderEvent.builder()
+                .type(OrderEvent.CANCELLED)
+                .orderId(ordersDB.getId())
+                .number(ordersDB.getNumber())
+                .status(Orders.CANCELLED)
+                .amount(ordersDB.getAmount())
+                .eventTime(cancelTime)
+                .build());
+        orderTimeoutProcessor.orderCancelled(ordersDB.getId());
+        dishStockService.orderCancelled(ordersDB);
     }
 
     /**
@@ -291,7 +557,7 @@ public class OrderServiceImpl implements OrderService {
             return shoppingCart;
         }).collect(Collectors.toList());
 
-        // 将购物车对象批量添加到数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象批量加入购物车
+        shoppingCartService.addBatch(shoppingCartList);
     }
 }
@@ -0,0 +1,333 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.sky.constant.ShoppingCartConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车，以redis为准
+ * 每个用户的购物车为两个hash：商品数量、商品信息，增减通过lua脚本原子完成；
+ * 有改动的用户记入待回写集合，由定时任务批量回写shopping_cart表
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "store", havingValue = "redis", matchIfMissing = true)
+public class RedisShoppingCartServiceImpl implements ShoppingCartService {
+
+    private static final long NEED_ITEM = -1;
+    private static final long NOT_LOADED = -2;
+
+    private static final RedisScript<Long> ADD_SCRIPT = script("lua/cart_add.lua");
+    private static final RedisScript<Long> SUB_SCRIPT = script("lua/cart_sub.lua");
+    private static final RedisScript<Long> CLEAN_SCRIPT = script("lua/cart_clean.lua");
+    private static final RedisScript<Long> LOAD_SCRIPT = script("lua/cart_load.lua");
+    private static final RedisScript<Long> FLUSH_UNLOCK_SCRIPT = script("lua/cart_flush_unlock.lua");
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 添加购物车
+     *
+     * @param shoppingCartDTO
+     */
+    public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+
+        //商品已在购物车中时不需要查询商品信息，只有第一次加入时才查库
+        long number = add(userId, field, "", 1);
+        if (number == NEED_ITEM)
+            add(userId, field, JSON.toJSONString(item(shoppingCartDTO)), 1);
+    }
+
+    /**
+     * 减少购物车
+     *
+     * @param shoppingCartDTO
+     */
+    public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = field(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        List<String> keys = keys(userId);
+        String ttl = String.valueOf(shoppingCartProperties.getTtlSeconds());
+
+        Long number = stringRedisTemplate.execute(SUB_SCRIPT, keys, field, ttl, userId.toString());
+        if (number != null && number == NOT_LOADED) {
+            load(userId);
+            stringRedisTemplate.execute(SUB_SCRIPT, keys, field, ttl, userId.toString());
+        }
+    }
+
+    /**
+     * 查看购物车
+     * @return
+     */
+    public List<ShoppingCart> showShoppingCart() {
+        return listByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 清空购物车商品
+     */
+    public void cleanShoppingCart() {
+        clean(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        List<ShoppingCart> shoppingCartList = read(userId);
+        if (shoppingCartList == null) {
+            load(userId);
+            shoppingCartList = read(userId);
+        }
+        return shoppingCartList == null ? new ArrayList<>() : shoppingCartList;
+    }
+
+    /**
+     * 清空指定用户的购物车，在事务中调用时等事务提交后再清空，避免下单回滚后购物车已丢失
+     * @param userId
+     */
+    public void cleanByUserId(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            clean(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                clean(userId);
+            }
+        });
+    }
+
+    /**
+     * 批量加入购物车，已有的商品数量累加
+     * @param shoppingCartList
+     */
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            String field = field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+            add(shoppingCart.getUserId(), field, JSON.toJSONString(meta(shoppingCart)), shoppingCart.getNumber());
+        }
+    }
+
+    /**
+     * 定时将有改动的购物车回写数据库，每个用户整体替换
+     * SPOP只保证同一次改动由一个节点取走；回写期间用户再次改动时其他节点可能取到同一用户，
+     * 因此每个用户回写时另加锁，拿不到锁的放回待回写集合，等持锁节点写完后再写入最新数据
+     */
+    @Scheduled(fixedDelayString = "${sky.shopping-cart.flush-interval-ms:5000}")
+    public void flush() {
+        int batchSize = shoppingCartProperties.getFlushBatchSize();
+        boolean failed = false;
+        while (!failed) {
+            List<String> userIds = stringRedisTemplate.opsForSet().pop(ShoppingCartConstant.DIRTY_KEY, batchSize);
+            if (userIds == null || userIds.isEmpty())
+                return;
+            for (String userId : userIds) {
+                try {
+                    flush(Long.valueOf(userId));
+                } catch (Exception e) {
+                    failed = true;//本轮不再继续取，避免数据库不可用时反复重试
+                    stringRedisTemplate.opsForSet().add(ShoppingCartConstant.DIRTY_KEY, userId);//放回，下次重试
+                    log.error("购物车回写数据库失败，用户id：{}，原因：{}", userId, e.getMessage());
+                }
+            }
+            if (userIds.size() < batchSize)
+                return;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void flush(Long userId) {
+        String lockKey = String.format(ShoppingCartConstant.FLUSH_LOCK_KEY, userId);
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token,
+                shoppingCartProperties.getFlushLockSeconds(), TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            //其他节点正在回写该用户的旧快照，放回待回写集合，下一轮再写
+            stringRedisTemplate.opsForSet().add(ShoppingCartConstant.DIRTY_KEY, userId.toString());
+            return;
+        }
+        try {
+            //持锁后才读取快照，保证后写入数据库的一定是更新的快照
+            List<ShoppingCart> shoppingCartList = read(userId);
+            if (shoppingCartList == null)//redis中已过期，数据库中的数据即为最新
+                return;
+            transactionTemplate.execute(status -> {
+                shoppingCartMapper.delete(new LambdaQueryWrapper<ShoppingCart>().eq(ShoppingCart::getUserId, userId));
+                if (!shoppingCartList.isEmpty())
+                    shoppingCartMapper.insertBatch(shoppingCartList);
+                return null;
+            });
+        } finally {
+            stringRedisTemplate.execute(FLUSH_UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        }
+    }
+
+    private long add(Long userId, String field, String itemJson, int delta) {
+        List<String> keys = keys(userId);
+        String ttl = String.valueOf(shoppingCartProperties.getTtlSeconds());
+        Long number = stringRedisTemplate.execute(ADD_SCRIPT, keys, field, itemJson, String.valueOf(delta), ttl, userId.toString());
+        if (number != null && number == NOT_LOADED) {
+            load(userId);
+            number = stringRedisTemplate.execute(ADD_SCRIPT, keys, field, itemJson, String.valueOf(delta), ttl, userId.toString());
+        }
+        return number == null ? 0 : number;
+    }
+
+    private void clean(Long userId) {
+        stringRedisTemplate.execute(CLEAN_SCRIPT, keys(userId),
+                String.valueOf(shoppingCartProperties.getTtlSeconds()), userId.toString());
+    }
+
+    /**
+     * 读取redis中的购物车，未加载时返回null
+     */
+    private List<ShoppingCart> read(Long userId) {
+        Map<Object, Object> quantities = stringRedisTemplate.opsForHash().entries(String.format(ShoppingCartConstant.QUANTITY_KEY, userId));
+        if (!quantities.containsKey(ShoppingCartConstant.LOADED_FIELD))
+            return null;
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(String.format(ShoppingCartConstant.ITEM_KEY, userId));
+
+        List<ShoppingCart> shoppingCartList = new ArrayList<>(quantities.size());
+        quantities.forEach((field, number) -> {
+            Object itemJson = items.get(field);
+            if (ShoppingCartConstant.LOADED_FIELD.equals(field) || itemJson == null)
+                return;
+            ShoppingCart shoppingCart = JSON.parseObject(itemJson.toString(), ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf(number.toString()));
+            shoppingCartList.add(shoppingCart);
+        });
+        shoppingCartList.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return shoppingCartList;
+    }
+
+    /**
+     * 从数据库加载购物车到redis，只在redis中没有该用户购物车时发生
+     */
+    private void load(Long userId) {
+        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        List<String> args = new ArrayList<>(shoppingCartList.size() * 3 + 1);
+        args.add(String.valueOf(shoppingCartProperties.getTtlSeconds()));
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            args.add(field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(String.valueOf(shoppingCart.getNumber()));
+            args.add(JSON.toJSONString(meta(shoppingCart)));
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, keys(userId).subList(0, 2), args.toArray());
+    }
+
+    /**
+     * 查询要加入购物车的菜品或套餐信息
+     */
+    private ShoppingCart item(ShoppingCartDTO shoppingCartDTO) {
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .dishId(shoppingCartDTO.getDishId())
+                .setmealId(shoppingCartDTO.getSetmealId())
+                .dishFlavor(shoppingCartDTO.getDishFlavor())
+                .createTime(LocalDateTime.now())
+                .build();
+
+        //判断当前添加到购物车的是菜品还是套餐
+        if (shoppingCartDTO.getDishId() != null) {
+            Dish dish = dishMapper.selectById(shoppingCartDTO.getDishId());
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        } else {
+            Setmeal setmeal = setmealMapper.selectById(shoppingCartDTO.getSetmealId());
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        }
+        return shoppingCart;
+    }
+
+    //商品信息中不保存id、用户和数量
+    private static ShoppingCart meta(ShoppingCart shoppingCart) {
+        return ShoppingCart.builder()
+                .name(shoppingCart.getName())
+                .image(shoppingCart.getImage())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .amount(shoppingCart.getAmount())
+                .createTime(shoppingCart.getCreateTime() == null ? LocalDateTime.now() : shoppingCart.getCreateTime())
+                .build();
+    }
+
+    //菜品按菜品id+口味区分，套餐按套餐id区分
+    private static String field(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null)
+            return "dish:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        return "setmeal:" + setmealId;
+    }
+
+    private static List<String> keys(Long userId) {
+        return Arrays.asList(
+                String.format(ShoppingCartConstant.QUANTITY_KEY, userId),
+                String.format(ShoppingCartConstant.ITEM_KEY, userId),
+                ShoppingCartConstant.DIRTY_KEY);
+    }
+
+    private static RedisScript<Long> script(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
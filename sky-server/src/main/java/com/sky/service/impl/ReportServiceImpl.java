@@ -0,0 +1,344 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.Orders;
+import com.sky.entity.ReportHourly;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.ReportMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.report.ReportRollupCollector;
+import com.sky.service.ReportService;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 报表统计，全部基于预聚合的汇总表，查询耗时只与天数相关
+ */
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    @Autowired
+    private ReportMapper reportMapper;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+
+    private static final String[] ORDER_STATUS_NAMES = {"待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Semaphore exportPermits;
+
+    @PostConstruct
+    public void init() {
+        exportPermits = new Semaphore(reportProperties.getMaxConcurrentExports());
+    }
+
+    /**
+     * 营业额统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
+        List<LocalDate> dates = dates(begin, end);
+        Map<LocalDate, ReportHourly> daily = daily(begin, end);
+
+        List<BigDecimal> turnoverList = new ArrayList<>();
+        for (LocalDate date : dates) {
+            ReportHourly day = daily.get(date);
+            turnoverList.add(day == null ? BigDecimal.ZERO : day.getTurnover());
+        }
+        return TurnoverReportVO.builder()
+                .dateList(StringUtils.join(dates, ","))
+                .turnoverList(StringUtils.join(turnoverList, ","))
+                .build();
+    }
+
+    /**
+     * 用户统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
+        List<LocalDate> dates = dates(begin, end);
+        Map<LocalDate, ReportHourly> daily = daily(begin, end);
+
+        //用户总量 = 开始日期之前的累计新增 + 范围内逐日累加
+        int totalUsers = reportMapper.sumNewUsersBefore(begin);
+        List<Integer> totalUserList = new ArrayList<>();
+        List<Integer> newUserList = new ArrayList<>();
+        for (LocalDate date : dates) {
+            ReportHourly day = daily.get(date);
+            int newUsers = day == null ? 0 : day.getNewUserCount();
+            totalUsers += newUsers;
+            newUserList.add(newUsers);
+            totalUserList.add(totalUsers);
+        }
+        return UserReportVO.builder()
+                .dateList(StringUtils.join(dates, ","))
+                .totalUserList(StringUtils.join(totalUserList, ","))
+                .newUserList(StringUtils.join(newUserList, ","))
+                .build();
+    }
+
+    /**
+     * 订单统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
+        List<LocalDate> dates = dates(begin, end);
+        Map<LocalDate, ReportHourly> daily = daily(begin, end);
+
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        List<Integer> orderCountList = new ArrayList<>();
+        List<Integer> validOrderCountList = new ArrayList<>();
+        for (LocalDate date : dates) {
+            ReportHourly day = daily.get(date);
+            int orderCount = day == null ? 0 : day.getOrderCount();
+            int validCount = day == null ? 0 : day.getValidOrderCount();
+            totalOrderCount += orderCount;
+            validOrderCount += validCount;
+            orderCountList.add(orderCount);
+            validOrderCountList.add(validCount);
+        }
+        return OrderReportVO.builder()
+                .dateList(StringUtils.join(dates, ","))
+                .orderCountList(StringUtils.join(orderCountList, ","))
+                .validOrderCountList(StringUtils.join(validOrderCountList, ","))
+                .totalOrderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(totalOrderCount == 0 ? 0.0 : validOrderCount * 1.0 / totalOrderCount)
+                .build();
+    }
+
+    /**
+     * 销量排名前10的商品
+     * @param begin
+     * @param end
+     * @return
+     */
+    public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
+        dates(begin, end);//校验日期范围
+        List<GoodsSalesDTO> top10 = reportMapper.salesTop10(begin, end);
+        return SalesTop10ReportVO.builder()
+                .nameList(top10.stream().map(GoodsSalesDTO::getName).collect(Collectors.joining(",")))
+                .numberList(top10.stream().map(g -> String.valueOf(g.getNumber())).collect(Collectors.joining(",")))
+                .build();
+    }
+
+    /**
+     * 日期范围内的运营数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public BusinessDataVO getBusinessData(LocalDate begin, LocalDate end) {
+        dates(begin, end);//校验日期范围
+        BigDecimal turnover = BigDecimal.ZERO;
+        int orderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (ReportHourly day : reportMapper.sumByDate(begin, end)) {
+            turnover = turnover.add(day.getTurnover());
+            orderCount += day.getOrderCount();
+            validOrderCount += day.getValidOrderCount();
+            newUsers += day.getNewUserCount();
+        }
+        return BusinessDataVO.builder()
+                .turnover(turnover.doubleValue())
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCount == 0 ? 0.0 : validOrderCount * 1.0 / orderCount)
+                .unitPrice(validOrderCount == 0 ? 0.0 : turnover.divide(BigDecimal.valueOf(validOrderCount), 2, RoundingMode.HALF_UP).doubleValue())
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 按订单、用户明细重建日期范围内的汇总，每天一个事务
+     * 当天的订单仍在变化，重建与实时增量同时写入会重复计数，因此结束日期最多到昨天；
+     * 以前日期不再累加增量，每天重建前先写完已累积的增量，重建期间暂停写入增量
+     * @param begin
+     * @param end
+     * @return 重建的天数
+     */
+    public int rebuild(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null)
+            throw new ReportBusinessException(MessageConstant.REPORT_RANGE_INVALID);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (end.isAfter(yesterday))
+            end = yesterday;
+        if (begin.isAfter(end))
+            return 0;
+
+        int days = 0;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            LocalDate reportDate = date;
+            long start = System.currentTimeMillis();
+            reportRollupCollector.fenced(() -> transactionTemplate.execute(status -> {
+                reportMapper.deleteHourlyByDate(reportDate);
+                reportMapper.rebuildHourlyOrders(reportDate, reportDate.atStartOfDay(), reportDate.plusDays(1).atStartOfDay());
+                reportMapper.rebuildHourlyUsers(reportDate, reportDate.atStartOfDay(), reportDate.plusDays(1).atStartOfDay());
+                reportMapper.deleteDishDailyByDate(reportDate);
+                reportMapper.rebuildDishDaily(reportDate, reportDate.atStartOfDay(), reportDate.plusDays(1).atStartOfDay());
+                return null;
+            }));
+            log.info("重建报表汇总：{}，耗时{}ms", reportDate, System.currentTimeMillis() - start);
+            days++;
+        }
+        return days;
+    }
+
+    /**
+     * 导出最近的运营数据报表
+     * 使用SXSSF流式写入，内存中只保留固定行数；订单明细逐行流式读取，不生成列表；同时导出数受限，避免占满数据库连接
+     * @param response
+     */
+    public void exportBusinessData(HttpServletResponse response) throws IOException {
+        if (!exportPermits.tryAcquire())
+            throw new ReportBusinessException(MessageConstant.REPORT_EXPORT_BUSY);
+
+        LocalDate end = LocalDate.now().minusDays(1);
+        LocalDate begin = end.minusDays(reportProperties.getExportDays() - 1);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(reportProperties.getExportRowWindow());
+        workbook.setCompressTempFiles(true);//超出窗口的行写入压缩的临时文件
+        try {
+            long start = System.currentTimeMillis();
+            writeBusinessSheet(workbook.createSheet("运营数据"), begin, end);
+            int orders = writeOrderSheet(workbook.createSheet("订单明细"), begin, end);
+
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment; filename=business-report-" + begin + "-" + end + ".xlsx");
+            workbook.write(response.getOutputStream());
+            response.flushBuffer();
+            log.info("导出运营数据报表：{}到{}，订单{}条，耗时{}ms", begin, end, orders, System.currentTimeMillis() - start);
+        } finally {
+            workbook.dispose();//删除临时文件
+            workbook.close();
+            exportPermits.release();
+        }
+    }
+
+    //概览及每日数据
+    private void writeBusinessSheet(Sheet sheet, LocalDate begin, LocalDate end) {
+        sheet.createRow(0).createCell(0).setCellValue("时间：" + begin + "至" + end);
+
+        BusinessDataVO businessData = getBusinessData(begin, end);
+        writeRow(sheet.createRow(2), "营业额", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+        Row total = sheet.createRow(3);
+        total.createCell(0).setCellValue(businessData.getTurnover());
+        total.createCell(1).setCellValue(businessData.getValidOrderCount());
+        total.createCell(2).setCellValue(businessData.getOrderCompletionRate());
+        total.createCell(3).setCellValue(businessData.getUnitPrice());
+        total.createCell(4).setCellValue(businessData.getNewUsers());
+
+        writeRow(sheet.createRow(5), "日期", "营业额", "订单数", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+        Map<LocalDate, ReportHourly> daily = daily(begin, end);
+        int rowIndex = 6;
+        for (LocalDate date : dates(begin, end)) {
+            ReportHourly day = daily.get(date);
+            BigDecimal turnover = day == null ? BigDecimal.ZERO : day.getTurnover();
+            int orderCount = day == null ? 0 : day.getOrderCount();
+            int validOrderCount = day == null ? 0 : day.getValidOrderCount();
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(date.toString());
+            row.createCell(1).setCellValue(turnover.doubleValue());
+            row.createCell(2).setCellValue(orderCount);
+            row.createCell(3).setCellValue(validOrderCount);
+            row.createCell(4).setCellValue(orderCount == 0 ? 0.0 : validOrderCount * 1.0 / orderCount);
+            row.createCell(5).setCellValue(validOrderCount == 0 ? 0.0
+                    : turnover.divide(BigDecimal.valueOf(validOrderCount), 2, RoundingMode.HALF_UP).doubleValue());
+            row.createCell(6).setCellValue(day == null ? 0 : day.getNewUserCount());
+        }
+    }
+
+    //订单明细，逐行读取逐行写入
+    private int writeOrderSheet(Sheet sheet, LocalDate begin, LocalDate end) {
+        writeRow(sheet.createRow(0), "订单号", "状态", "用户id", "下单时间", "结账时间", "金额", "收货人", "手机号", "地址", "备注");
+        int[] rowIndex = {1};
+        orderMapper.streamByOrderTime(begin.atStartOfDay(), end.plusDays(1).atStartOfDay(), context -> {
+            Orders order = context.getResultObject();
+            Row row = sheet.createRow(rowIndex[0]++);
+            row.createCell(0).setCellValue(order.getNumber());
+            row.createCell(1).setCellValue(statusName(order.getStatus()));
+            row.createCell(2).setCellValue(order.getUserId() == null ? "" : order.getUserId().toString());
+            row.createCell(3).setCellValue(format(order.getOrderTime()));
+            row.createCell(4).setCellValue(format(order.getCheckoutTime()));
+            row.createCell(5).setCellValue(order.getAmount() == null ? 0 : order.getAmount().doubleValue());
+            row.createCell(6).setCellValue(order.getConsignee());
+            row.createCell(7).setCellValue(order.getPhone());
+            row.createCell(8).setCellValue(order.getAddress());
+            row.createCell(9).setCellValue(order.getRemark());
+        });
+        return rowIndex[0] - 1;
+    }
+
+    private static void writeRow(Row row, String... values) {
+        for (int i = 0; i < values.length; i++)
+            row.createCell(i).setCellValue(values[i]);
+    }
+
+    private static String format(LocalDateTime time) {
+        return time == null ? "" : time.format(DATE_TIME_FORMATTER);
+    }
+
+    //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private static String statusName(Integer status) {
+        return status == null || status < 1 || status > ORDER_STATUS_NAMES.length ? "" : ORDER_STATUS_NAMES[status - 1];
+    }
+
+    //校验日期范围并列出范围内的每一天
+    private List<LocalDate> dates(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)
+                || ChronoUnit.DAYS.between(begin, end) >= reportProperties.getMaxRangeDays())
+            throw new ReportBusinessException(MessageConstant.REPORT_RANGE_INVALID);
+
+        List<LocalDate> dates = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1))
+            dates.add(date);
+        return dates;
+    }
+
+    private Map<LocalDate, ReportHourly> daily(LocalDate begin, LocalDate end) {
+        return reportMapper.sumByDate(begin, end).stream()
+                .collect(Collectors.toMap(ReportHourly::getReportDate, Function.identity()));
+    }
+}
@@ -3,6 +3,7 @@ package com.sky.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCacheInvalidator;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -40,6 +41,8 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private MenuCacheInvalidator menuCacheInvalidator;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -64,6 +67,8 @@ public class SetmealServiceImpl implements SetmealService {
         //保存套餐和菜品的关联关系
         for (SetmealDish setmealDish : setmealDishList)
             setmealDishMapper.insert(setmealDish);
+
+        menuCacheInvalidator.setmealCategoryChanged(setmeal.getCategoryId());//清理该分类的C端套餐缓存
     }
 
     /**
@@ -82,6 +87,7 @@ public class SetmealServiceImpl implements SetmealService {
 
     /**
      * 批量删除套餐
+     * 只能删除停售套餐，停售套餐不在C端缓存中，无需清理缓存
      * @param ids
      */
     @Transactional
@@ -121,6 +127,7 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void update(SetmealDTO setmealDTO) {
+        Setmeal setmealDB = setmealMapper.selectById(setmealDTO.getId());//修改前的套餐，用于清理原分类的缓存
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO, setmeal);
         setmealMapper.updateById(setmeal);//修改套餐数据
@@ -135,6 +142,11 @@ public class SetmealServiceImpl implements SetmealService {
         //保存套餐和菜品的新关系
         for (SetmealDish setmealDish : setmealDishList)
             setmealDishMapper.insert(setmealDish);
+
+        //套餐可能被移到其他分类，新旧分类的缓存都要清理
+        if (setmealDB != null)
+            menuCacheInvalidator.setmealCategoryChanged(setmealDB.getCategoryId());
+        menuCacheInvalidator.setmealCategoryChanged(setmealDTO.getCategoryId());
     }
 
     /**
@@ -142,6 +154,7 @@ public class SetmealServiceImpl implements SetmealService {
      * @param status
      * @param id
      */
+    @Transactional
     public void startOrStop(Integer status, Long id) {
         if(status == StatusConstant.ENABLE){//起售套餐时，若套餐内有停售菜品，则抛出异常提示"无法启售"
             List<Dish> dishList = dishMapper.getBySetmealId(id);//获取含有该套餐的菜品,并按在售状态升序排序(只需检测第一个是否停售则可)
@@ -150,6 +163,9 @@ public class SetmealServiceImpl implements SetmealService {
         }
 
         setmealMapper.updateById(Setmeal.builder().status(status).id(id).build());//套餐状态更改
+        Setmeal setmeal = setmealMapper.selectById(id);
+        if (setmeal != null)
+            menuCacheInvalidator.setmealCategoryChanged(setmeal.getCategoryId());
     }
 
 
@@ -2,106 +2,53 @@ package com.sky.service.impl;
 
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
-import com.sky.entity.SetmealDish;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * 购物车，直接读写shopping_cart表
+ */
 @Service
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "store", havingValue = "database")
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
-    @Autowired
-    private DishMapper dishMapper;
-    @Autowired
-    private SetmealMapper setmealMapper;
 
     /**
-     * 添加购物车
+     * 添加购物车，商品已存在时数量加1，由一条upsert语句原子完成
      *
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
-        //只能查询自己的购物车数据
+        //只能操作自己的购物车数据
         shoppingCart.setUserId(BaseContext.getCurrentId());
-
-        //判断当前商品是否在购物车中
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
-
-        if (shoppingCartList != null && shoppingCartList.size() == 1) {
-            //如果已经存在，就更新数量，数量加1
-            shoppingCart = shoppingCartList.get(0);
-            shoppingCart.setNumber(shoppingCart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(shoppingCart);
-        } else {
-            //如果不存在，插入数据，数量就是1
-
-            //判断当前添加到购物车的是菜品还是套餐
-            Long dishId = shoppingCartDTO.getDishId();
-            if (dishId != null) {
-                //添加到购物车的是菜品
-                Dish dish = dishMapper.selectById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            } else {
-                //添加到购物车的是套餐
-                Setmeal setmeal = setmealMapper.selectById(shoppingCartDTO.getSetmealId());
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
-        }
+        shoppingCartMapper.insertOrIncrement(shoppingCart);
     }
 
 
     /**
-     * 减少购物车
+     * 减少购物车，条件更新数量，减到0时再条件删除
      *
      * @param shoppingCartDTO
      */
     public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
-        shoppingCart.setUserId(BaseContext.getCurrentId());//只能查询自己的购物车数据
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);//条件查询获取对应菜品/套餐
-        shoppingCart = shoppingCartList.get(0);//获取对应商品全部信息
+        shoppingCart.setUserId(BaseContext.getCurrentId());//只能操作自己的购物车数据
 
-        LambdaQueryWrapper<ShoppingCart> lambdaQueryWrapper = new LambdaQueryWrapper<ShoppingCart>()//构造多条件查询指定商品
-                .eq(ShoppingCart::getUserId, BaseContext.getCurrentId())
-                .eq(shoppingCartDTO.getDishId()!=null, ShoppingCart::getDishId, shoppingCartDTO.getDishId())
-                .eq(shoppingCartDTO.getSetmealId()!=null, ShoppingCart::getSetmealId, shoppingCartDTO.getSetmealId());
-
-        LambdaUpdateWrapper<ShoppingCart> lambdaUpdateWrapper = new LambdaUpdateWrapper<ShoppingCart>()//构造多条件查询指定商品使其数量-1
-                .eq(ShoppingCart::getUserId, BaseContext.getCurrentId())
-                .eq(shoppingCartDTO.getDishId() != null, ShoppingCart::getDishId, shoppingCartDTO.getDishId())
-                .eq(shoppingCartDTO.getSetmealId() != null, ShoppingCart::getSetmealId, shoppingCartDTO.getSetmealId())
-                .setDecrBy(ShoppingCart::getNumber, 1);
-
-        if (shoppingCart.getNumber() == 1) //购物车商品数量=1，则直接删除
-            shoppingCartMapper.delete(lambdaQueryWrapper);
-        else//购物车商品数量≠1则-1
-            shoppingCartMapper.update(lambdaUpdateWrapper);
-//            shoppingCart.setNumber(shoppingCart.getNumber() - 1);
-//            shoppingCartMapper.updateNumberById(shoppingCart);
+        if (shoppingCartMapper.decrement(shoppingCart) > 0 && shoppingCart.getNumber() <= 0)
+            shoppingCartMapper.deleteIfEmpty(shoppingCart);
     }
 
     /**
@@ -118,6 +65,31 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      * 清空购物车商品
      */
     public void cleanShoppingCart() {
-        shoppingCartMapper.delete(new LambdaQueryWrapper<ShoppingCart>().eq(ShoppingCart::getUserId, BaseContext.getCurrentId()));
+        cleanByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 查询指定用户的购物车
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+    }
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    public void cleanByUserId(Long userId) {
+        shoppingCartMapper.delete(new LambdaQueryWrapper<ShoppingCart>().eq(ShoppingCart::getUserId, userId));
+    }
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartMapper.insertBatch(shoppingCartList);
     }
 }
\ No newline at end of file
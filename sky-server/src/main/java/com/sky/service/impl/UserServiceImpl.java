@@ -10,7 +10,9 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.report.ReportRollupCollector;
 import com.sky.service.UserService;
+import com.sky.upstream.UpstreamBulkhead;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,18 +21,26 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 @Slf4j
 public class UserServiceImpl implements UserService {
 
-    //微信服务接口地址
-    public static final String WX_LOGIN = "https://api.weixin.qq.com/sns/jscode2session";
+    //微信登录接口路径，主机地址取自sky.wechat.api-base-url
+    public static final String WX_LOGIN = "/sns/jscode2session";
 
     @Autowired
     private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private UpstreamBulkhead upstreamBulkhead;
+    @Autowired
+    private ReportRollupCollector reportRollupCollector;
+    @Autowired
+    private Executor applicationTaskExecutor; //查库注册在该线程池执行，不占用外部调用的线程
 
     /**
      * 微信登录
@@ -39,6 +49,20 @@ public class UserServiceImpl implements UserService {
      */
     public User wxLogin(UserLoginDTO userLoginDTO) {
         String openid = getOpenid(userLoginDTO.getCode());
+        return loginByOpenid(openid);
+    }
+
+    /**
+     * 微信登录，调用微信接口在外部接口线程池中执行，之后的查库注册在应用任务线程池中执行
+     * @param userLoginDTO
+     * @return
+     */
+    public CompletableFuture<User> wxLoginAsync(UserLoginDTO userLoginDTO) {
+        return HttpClientUtil.doGetAsync(weChatProperties.getApiBaseUrl() + WX_LOGIN, openidParams(userLoginDTO.getCode()), upstreamBulkhead.executor())
+                .thenApplyAsync(json -> loginByOpenid(JSON.parseObject(json).getString("openid")), applicationTaskExecutor);
+    }
+
+    private User loginByOpenid(String openid) {
         //判断openid是否为空，如果为空则登录失败，抛出业务异常
         if(openid == null)
             throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
@@ -50,6 +74,7 @@ public class UserServiceImpl implements UserService {
         if(user == null){
             user = User.builder().openid(openid).build();
             userMapper.insert(user);
+            reportRollupCollector.userCreated(user.getCreateTime());
         }
         return user;
     }
@@ -61,15 +86,19 @@ public class UserServiceImpl implements UserService {
      */
     private String getOpenid(String code){
         //调用微信接口服务，获得当前微信用户的openid
+        String json = HttpClientUtil.doGet(weChatProperties.getApiBaseUrl() + WX_LOGIN, openidParams(code));
+
+        JSONObject jsonObject = JSON.parseObject(json);
+        String openid = jsonObject.getString("openid");
+        return openid;
+    }
+
+    private Map<String, String> openidParams(String code) {
         Map<String, String> map = new HashMap<>();
         map.put("appid",weChatProperties.getAppid());
         map.put("secret",weChatProperties.getSecret());
         map.put("js_code",code);
         map.put("grant_type","authorization_code");
-        String json = HttpClientUtil.doGet(WX_LOGIN, map);
-
-        JSONObject jsonObject = JSON.parseObject(json);
-        String openid = jsonObject.getString("openid");
-        return openid;
+        return map;
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.sky.shop;
+
+import com.sky.constant.StatusConstant;
+import com.sky.properties.ShopProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 店铺营业状态的本地副本，读取时不访问redis
+ * 管理端修改后经redis频道通知各节点，另有定时重新读取兜底丢失的通知；配置了营业时段时在本地按当前时间判断
+ */
+@Component
+@Slf4j
+public class ShopStatusHolder implements MessageListener {
+
+    public static final String STATUS_KEY = "SHOP_STATUS";
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private ShopProperties shopProperties;
+
+    private volatile Integer manualStatus = StatusConstant.ENABLE; //管理端设置的状态
+    private List<Window> windows;
+
+    @PostConstruct
+    public void init() {
+        windows = parseWindows(shopProperties.getBusinessHours());
+        //未设置过时默认营业中
+        redisTemplate.opsForValue().setIfAbsent(STATUS_KEY, StatusConstant.ENABLE);
+        refresh();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(shopProperties.getStatusChannel()));
+    }
+
+    /**
+     * 当前营业状态：管理端设为营业中，且配置了营业时段时处于时段内
+     * @return 1营业中 0打烊中
+     */
+    public Integer getStatus() {
+        if (!StatusConstant.ENABLE.equals(manualStatus))
+            return StatusConstant.DISABLE;
+        if (windows.isEmpty())
+            return StatusConstant.ENABLE;
+        LocalTime now = LocalTime.now();
+        for (Window window : windows)
+            if (window.contains(now))
+                return StatusConstant.ENABLE;
+        return StatusConstant.DISABLE;
+    }
+
+    /**
+     * 管理端设置的营业状态，不考虑营业时段
+     * @return
+     */
+    public Integer getManualStatus() {
+        return manualStatus;
+    }
+
+    /**
+     * 设置营业状态并通知所有节点
+     * @param status
+     */
+    public void setStatus(Integer status) {
+        redisTemplate.opsForValue().set(STATUS_KEY, status);
+        manualStatus = status;
+        stringRedisTemplate.convertAndSend(shopProperties.getStatusChannel(), String.valueOf(status));
+    }
+
+    /**
+     * 从redis重新读取
+     */
+    @Scheduled(fixedDelayString = "${sky.shop.refresh-interval-ms:30000}", initialDelayString = "${sky.shop.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            Integer status = (Integer) redisTemplate.opsForValue().get(STATUS_KEY);
+            if (status != null)
+                manualStatus = status;
+        } catch (Exception e) {
+            //redis不可用时保留当前状态
+            log.warn("读取店铺营业状态失败，保留当前状态：{}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            manualStatus = Integer.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            log.warn("店铺营业状态通知格式错误，重新读取");
+            refresh();
+        }
+    }
+
+    private static List<Window> parseWindows(List<String> businessHours) {
+        List<Window> windows = new ArrayList<>();
+        for (String hours : businessHours) {
+            String[] range = hours.trim().split("-");
+            if (range.length != 2)
+                throw new IllegalArgumentException("营业时段格式错误：" + hours);
+            windows.add(new Window(LocalTime.parse(range[0].trim()), LocalTime.parse(range[1].trim())));
+        }
+        return windows;
+    }
+
+    /**
+     * 营业时段，包含开始不包含结束，结束早于开始时跨零点
+     */
+    private static final class Window {
+        private final LocalTime start;
+        private final LocalTime end;
+
+        Window(LocalTime start, LocalTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean contains(LocalTime time) {
+            if (start.isBefore(end))
+                return !time.isBefore(start) && time.isBefore(end);
+            return !time.isBefore(start) || time.isBefore(end);
+        }
+    }
+}
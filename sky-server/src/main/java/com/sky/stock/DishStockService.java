@@ -0,0 +1,212 @@
+package com.sky.stock;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.DishStockDaily;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.SetmealDish;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.DishStockMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.SetmealDishMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品每日限量：下单时预占，取消时归还，定时把已售份数同步到数据库
+ * 套餐按其包含的菜品份数预占；未设置限量的菜品不参与计数，没有任何限量时不访问计数器
+ */
+@Component
+@Slf4j
+public class DishStockService {
+
+    @Autowired
+    private StockCounter stockCounter;
+    @Autowired
+    private DishStockMapper dishStockMapper;
+    @Autowired
+    private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    private volatile Map<Long, Integer> quotas = Collections.emptyMap(); //菜品id -> 每日限量
+    private final ConcurrentMap<Long, List<SetmealDish>> setmealDishes = new ConcurrentHashMap<>(); //套餐包含的菜品，刷新限量时清空
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        refreshQuotas();
+        LocalDate today = LocalDate.now();
+        stockCounter.seed(today, toMap(dishStockMapper.listByDate(today)));
+    }
+
+    /**
+     * 为购物车中的商品预占当日份数
+     * @param items
+     * @param date 下单日期
+     * @return 实际预占的菜品份数，用于失败时归还
+     * @throws OrderBusinessException 有菜品已售罄
+     */
+    public Map<Long, Integer> reserve(List<ShoppingCart> items, LocalDate date) {
+        //只读取一次，计算需求和扣减使用同一份限量，刷新替换时不会出现需求中的菜品在限量中不存在
+        Map<Long, Integer> current = quotas;
+        if (current.isEmpty())
+            return Collections.emptyMap();
+        Map<Long, Integer> demand = new HashMap<>();
+        for (ShoppingCart item : items)
+            addDemand(current, demand, item.getDishId(), item.getSetmealId(), item.getNumber());
+        if (demand.isEmpty())
+            return demand;
+        if (!stockCounter.reserve(date, demand, current)) {
+            rejected.increment();
+            throw new OrderBusinessException(MessageConstant.DISH_SOLD_OUT);
+        }
+        reserved.increment();
+        return demand;
+    }
+
+    /**
+     * 归还预占的份数
+     * @param demand
+     * @param date
+     */
+    public void release(Map<Long, Integer> demand, LocalDate date) {
+        if (demand.isEmpty())
+            return;
+        try {
+            stockCounter.release(date, demand);
+            released.increment();
+        } catch (Exception e) {
+            //归还失败只会少卖，不影响订单本身
+            log.error("归还菜品份数失败：{}，原因：{}", demand, e.getMessage());
+        }
+    }
+
+    /**
+     * 订单已取消，事务提交后归还该订单预占的份数
+     * 只能由条件更新确实把订单改为已取消的一方调用，否则同一订单会被归还多次
+     * @param order 至少包含id和下单时间
+     */
+    public void orderCancelled(Orders order) {
+        ordersCancelled(Collections.singletonList(order));
+    }
+
+    /**
+     * 一批订单已取消，一次查询订单明细，事务提交后按下单日期归还预占的份数
+     * 调用约定同orderCancelled
+     * @param orders 至少包含id和下单时间
+     */
+    public void ordersCancelled(List<Orders> orders) {
+        Map<Long, Integer> current = quotas;
+        if (current.isEmpty() || orders.isEmpty())
+            return;
+        Map<Long, LocalDate> dates = new HashMap<>();
+        orders.forEach(order -> dates.put(order.getId(), order.getOrderTime().toLocalDate()));
+        Map<LocalDate, Map<Long, Integer>> demands = new HashMap<>();
+        for (OrderDetail detail : orderDetailMapper.getByOrderIds(dates.keySet(), null)) {
+            Map<Long, Integer> demand = demands.computeIfAbsent(dates.get(detail.getOrderId()), date -> new HashMap<>());
+            addDemand(current, demand, detail.getDishId(), detail.getSetmealId(), detail.getNumber());
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            demands.forEach((date, demand) -> release(demand, date));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                demands.forEach((date, demand) -> release(demand, date));
+            }
+        });
+    }
+
+    /**
+     * 刷新限量配置，并把今天和昨天的已售份数写入数据库
+     */
+    @Scheduled(fixedDelayString = "${sky.stock.reconcile-interval-ms:5000}")
+    public void reconcile() {
+        refreshQuotas();
+        LocalDate today = LocalDate.now();
+        for (LocalDate date : new LocalDate[]{today.minusDays(1), today}) {
+            Map<Long, Integer> sold = stockCounter.sold(date);
+            if (sold.isEmpty())
+                continue;
+            List<DishStockDaily> stocks = new ArrayList<>(sold.size());
+            sold.forEach((dishId, number) -> stocks.add(new DishStockDaily(date, dishId, number)));
+            dishStockMapper.upsertSold(stocks);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("停机前同步菜品已售份数失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("quotaDishes", (long) quotas.size());
+        stats.put("reserved", reserved.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("released", released.sum());
+        return stats;
+    }
+
+    private void refreshQuotas() {
+        quotas = dishStockMapper.listQuotas().stream().collect(Collectors.toMap(Dish::getId, Dish::getDailyQuota));
+        setmealDishes.clear();
+    }
+
+    //累加一项商品对各限量菜品的需求，套餐展开为其包含的菜品
+    private void addDemand(Map<Long, Integer> quotas, Map<Long, Integer> demand, Long dishId, Long setmealId, Integer number) {
+        int count = number == null ? 1 : number;
+        if (dishId != null) {
+            if (quotas.containsKey(dishId))
+                demand.merge(dishId, count, Integer::sum);
+            return;
+        }
+        if (setmealId == null)
+            return;
+        List<SetmealDish> dishes = setmealDishes.computeIfAbsent(setmealId, id ->
+                setmealDishMapper.selectList(new LambdaQueryWrapper<SetmealDish>().eq(SetmealDish::getSetmealId, id)));
+        for (SetmealDish setmealDish : dishes)
+            if (quotas.containsKey(setmealDish.getDishId()))
+                demand.merge(setmealDish.getDishId(), count * setmealDish.getCopies(), Integer::sum);
+    }
+
+    private static Map<Long, Integer> toMap(List<DishStockDaily> stocks) {
+        Map<Long, Integer> map = new HashMap<>();
+        stocks.forEach(s -> map.put(s.getDishId(), s.getSold()));
+        return map;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sky.stock;
+
+import com.sky.properties.StockProperties;
+import com.sky.utils.StripedQuota;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内计数，剩余份数分段CAS扣减，已售份数用LongAdder累计，只适用于单节点部署
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.stock", name = "mode", havingValue = "local")
+public class LocalStockCounter implements StockCounter {
+
+    @Autowired
+    private StockProperties stockProperties;
+
+    private final ConcurrentMap<LocalDate, Day> days = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean reserve(LocalDate date, Map<Long, Integer> demand, Map<Long, Integer> quotas) {
+        Day day = day(date);
+        List<Map.Entry<DishCounter, Integer>> acquired = new ArrayList<>(demand.size());
+        for (Map.Entry<Long, Integer> entry : demand.entrySet()) {
+            DishCounter counter = day.counter(entry.getKey(), quotas.get(entry.getKey()));
+            if (!counter.remaining.tryAcquire(entry.getValue())) {
+                //有菜品不足，归还已扣减的菜品
+                acquired.forEach(a -> a.getKey().release(a.getValue()));
+                return false;
+            }
+            counter.sold.add(entry.getValue());
+            acquired.add(new AbstractMap.SimpleImmutableEntry<>(counter, entry.getValue()));
+        }
+        return true;
+    }
+
+    @Override
+    public void release(LocalDate date, Map<Long, Integer> demand) {
+        Day day = days.get(date);
+        if (day == null)
+            return;
+        demand.forEach((dishId, number) -> {
+            DishCounter counter = day.counters.get(dishId);
+            if (counter != null)
+                counter.release(number);
+            else
+                day.seeded.merge(dishId, -number, (a, b) -> Math.max(0, a + b));
+        });
+    }
+
+    @Override
+    public Map<Long, Integer> sold(LocalDate date) {
+        Day day = days.get(date);
+        if (day == null)
+            return Collections.emptyMap();
+        Map<Long, Integer> sold = new HashMap<>();
+        day.counters.forEach((dishId, counter) -> sold.put(dishId, (int) counter.sold.sum()));
+        return sold;
+    }
+
+    @Override
+    public void seed(LocalDate date, Map<Long, Integer> sold) {
+        day(date).seeded.putAll(sold);
+    }
+
+    private Day day(LocalDate date) {
+        Day day = days.get(date);
+        if (day != null)
+            return day;
+        //新的一天，只保留前一天的计数用于归还跨日取消的订单
+        days.keySet().removeIf(d -> d.isBefore(date.minusDays(1)));
+        return days.computeIfAbsent(date, d -> new Day());
+    }
+
+    private final class Day {
+        private final ConcurrentMap<Long, DishCounter> counters = new ConcurrentHashMap<>();
+        private final Map<Long, Integer> seeded = new ConcurrentHashMap<>(); //启动时从数据库读取的已售份数
+
+        DishCounter counter(Long dishId, int quota) {
+            DishCounter counter = counters.computeIfAbsent(dishId, id -> new DishCounter(quota, seeded.getOrDefault(id, 0)));
+            if (counter.quota != quota) {
+                //限量被修改，按已售份数重新计算剩余；修改瞬间正在进行的扣减可能不计入
+                counter = counters.compute(dishId, (id, old) -> old.quota == quota ? old : old.withQuota(quota));
+            }
+            return counter;
+        }
+    }
+
+    private final class DishCounter {
+        private final int quota;
+        private final StripedQuota remaining;
+        private final LongAdder sold;
+
+        DishCounter(int quota, int sold) {
+            this.quota = quota;
+            this.remaining = new StripedQuota(quota - sold, stockProperties.getStripes());
+            this.sold = new LongAdder();
+            this.sold.add(sold);
+        }
+
+        private DishCounter(int quota, LongAdder sold) {
+            this.quota = quota;
+            this.remaining = new StripedQuota(quota - (int) sold.sum(), stockProperties.getStripes());
+            this.sold = sold;
+        }
+
+        DishCounter withQuota(int quota) {
+            return new DishCounter(quota, sold);
+        }
+
+        void release(int number) {
+            remaining.release(number);
+            sold.add(-number);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.sky.stock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis中按日期保存已售份数，预占由lua脚本原子完成，多节点共享
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.stock", name = "mode", havingValue = "redis", matchIfMissing = true)
+public class RedisStockCounter implements StockCounter {
+
+    private static final String SOLD_KEY = "stock:sold:%s"; //当日已售hash，field为菜品id
+    private static final long EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(2); //保留到次日，便于归还跨日取消的订单
+    private static final RedisScript<Long> RESERVE_SCRIPT = script("lua/stock_reserve.lua");
+    private static final RedisScript<Long> RELEASE_SCRIPT = script("lua/stock_release.lua");
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public boolean reserve(LocalDate date, Map<Long, Integer> demand, Map<Long, Integer> quotas) {
+        List<String> args = new ArrayList<>(demand.size() * 3 + 1);
+        args.add(String.valueOf(EXPIRE_SECONDS));
+        demand.forEach((dishId, number) -> {
+            args.add(String.valueOf(dishId));
+            args.add(String.valueOf(number));
+            args.add(String.valueOf(quotas.get(dishId)));
+        });
+        Long result = stringRedisTemplate.execute(RESERVE_SCRIPT, Collections.singletonList(key(date)), args.toArray());
+        return result != null && result == 0;
+    }
+
+    @Override
+    public void release(LocalDate date, Map<Long, Integer> demand) {
+        List<String> args = new ArrayList<>(demand.size() * 2 + 1);
+        args.add(String.valueOf(EXPIRE_SECONDS));
+        demand.forEach((dishId, number) -> {
+            args.add(String.valueOf(dishId));
+            args.add(String.valueOf(number));
+        });
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key(date)), args.toArray());
+    }
+
+    @Override
+    public Map<Long, Integer> sold(LocalDate date) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key(date));
+        Map<Long, Integer> sold = new HashMap<>();
+        entries.forEach((dishId, number) -> sold.put(Long.valueOf(dishId.toString()), Integer.valueOf(number.toString())));
+        return sold;
+    }
+
+    @Override
+    public void seed(LocalDate date, Map<Long, Integer> sold) {
+        String key = key(date);
+        sold.forEach((dishId, number) -> stringRedisTemplate.opsForHash().putIfAbsent(key, String.valueOf(dishId), String.valueOf(number)));
+        if (!sold.isEmpty())
+            stringRedisTemplate.expire(key, EXPIRE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static String key(LocalDate date) {
+        return String.format(SOLD_KEY, date);
+    }
+
+    private static RedisScript<Long> script(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+}
@@ -0,0 +1,40 @@
+package com.sky.stock;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 菜品每日限量计数
+ */
+public interface StockCounter {
+
+    /**
+     * 预占份数，所有菜品都足够时才扣减
+     * @param date 日期
+     * @param demand 菜品id -> 份数
+     * @param quotas 菜品id -> 每日限量
+     * @return 有菜品不足时返回false且不扣减
+     */
+    boolean reserve(LocalDate date, Map<Long, Integer> demand, Map<Long, Integer> quotas);
+
+    /**
+     * 归还份数
+     * @param date
+     * @param demand
+     */
+    void release(LocalDate date, Map<Long, Integer> demand);
+
+    /**
+     * 某日各菜品已售份数
+     * @param date
+     * @return
+     */
+    Map<Long, Integer> sold(LocalDate date);
+
+    /**
+     * 用数据库中的已售份数初始化计数，已有计数的菜品不受影响
+     * @param date
+     * @param sold
+     */
+    void seed(LocalDate date, Map<Long, Integer> sold);
+}
@@ -0,0 +1,88 @@
+package com.sky.upstream;
+
+import com.sky.constant.MessageConstant;
+import com.sky.context.RequestContext;
+import com.sky.exception.UpstreamBusyException;
+import com.sky.properties.UpstreamProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 外部接口调用隔离舱
+ * 微信登录、支付等外部调用在独立的有界线程池中执行，Tomcat线程不再阻塞等待；
+ * 线程和队列都满时立即拒绝，外部接口变慢不会拖垮本地接口
+ */
+@Component
+@Slf4j
+public class UpstreamBulkhead {
+
+    @Autowired
+    private UpstreamProperties upstreamProperties;
+
+    private ThreadPoolExecutor pool;
+    private final LongAdder rejected = new LongAdder(); //被拒绝的调用数
+    private final Executor executor = command -> {
+        try {
+            pool.execute(RequestContext.wrap(command));//外部调用及其后续处理沿用发起请求的上下文
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new UpstreamBusyException(MessageConstant.UPSTREAM_BUSY);
+        }
+    };
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int maxConcurrent = upstreamProperties.getMaxConcurrent();
+        pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(upstreamProperties.getQueueCapacity()),
+                r -> {
+                    Thread thread = new Thread(r, "upstream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        log.info("外部接口隔离舱已启动，并发上限：{}，队列长度：{}", maxConcurrent, upstreamProperties.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 执行外部调用的线程池，提交被拒绝时抛出UpstreamBusyException
+     * @return
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * 运行统计
+     * @return
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("active", (long) pool.getActiveCount());
+        stats.put("queued", (long) pool.getQueue().size());
+        stats.put("maxConcurrent", (long) pool.getMaximumPoolSize());
+        stats.put("completed", pool.getCompletedTaskCount());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
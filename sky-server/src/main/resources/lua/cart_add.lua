@@ -0,0 +1,18 @@
+-- 购物车商品数量增加
+-- KEYS[1] 数量hash  KEYS[2] 商品信息hash  KEYS[3] 待落库用户集合
+-- ARGV[1] 商品field  ARGV[2] 商品信息json(未知时为空串)  ARGV[3] 增量  ARGV[4] 过期时间(s)  ARGV[5] 用户id
+-- 返回：增加后的数量；-1 需要商品信息；-2 购物车尚未从数据库加载
+if redis.call('HEXISTS', KEYS[1], '_') == 0 then
+    return -2
+end
+if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then
+    if ARGV[2] == '' then
+        return -1
+    end
+    redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+end
+local number = redis.call('HINCRBY', KEYS[1], ARGV[1], tonumber(ARGV[3]))
+redis.call('EXPIRE', KEYS[1], ARGV[4])
+redis.call('EXPIRE', KEYS[2], ARGV[4])
+redis.call('SADD', KEYS[3], ARGV[5])
+return number
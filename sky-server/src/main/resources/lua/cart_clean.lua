@@ -0,0 +1,8 @@
+-- 清空购物车，只保留已加载标记
+-- KEYS[1] 数量hash  KEYS[2] 商品信息hash  KEYS[3] 待落库用户集合
+-- ARGV[1] 过期时间(s)  ARGV[2] 用户id
+redis.call('DEL', KEYS[1], KEYS[2])
+redis.call('HSET', KEYS[1], '_', 1)
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('SADD', KEYS[3], ARGV[2])
+return 1
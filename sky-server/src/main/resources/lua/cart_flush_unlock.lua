@@ -0,0 +1,7 @@
+-- 释放购物车回写锁，只删除自己持有的锁
+-- KEYS[1] 回写锁
+-- ARGV[1] 加锁时写入的标识
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,16 @@
+-- 从数据库加载购物车，已被其他请求加载过则不覆盖
+-- KEYS[1] 数量hash  KEYS[2] 商品信息hash
+-- ARGV[1] 过期时间(s)  ARGV[2..] 依次为 商品field, 数量, 商品信息json
+-- 返回：1 已加载；0 已被其他请求加载
+if redis.call('HEXISTS', KEYS[1], '_') == 1 then
+    return 0
+end
+redis.call('DEL', KEYS[1], KEYS[2])
+for i = 2, #ARGV, 3 do
+    redis.call('HINCRBY', KEYS[1], ARGV[i], tonumber(ARGV[i + 1]))
+    redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 2])
+end
+redis.call('HSET', KEYS[1], '_', 1)
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[1])
+return 1
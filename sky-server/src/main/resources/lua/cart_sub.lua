@@ -0,0 +1,20 @@
+-- 购物车商品数量减1，减到0时删除该商品
+-- KEYS[1] 数量hash  KEYS[2] 商品信息hash  KEYS[3] 待落库用户集合
+-- ARGV[1] 商品field  ARGV[2] 过期时间(s)  ARGV[3] 用户id
+-- 返回：减少后的数量；-2 购物车尚未从数据库加载
+if redis.call('HEXISTS', KEYS[1], '_') == 0 then
+    return -2
+end
+if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+local number = redis.call('HINCRBY', KEYS[1], ARGV[1], -1)
+if number <= 0 then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    redis.call('HDEL', KEYS[2], ARGV[1])
+    number = 0
+end
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+redis.call('EXPIRE', KEYS[2], ARGV[2])
+redis.call('SADD', KEYS[3], ARGV[3])
+return number
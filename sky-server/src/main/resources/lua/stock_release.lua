@@ -0,0 +1,11 @@
+-- 归还菜品份数，不会减到0以下
+-- KEYS[1] 当日已售hash
+-- ARGV[1] 过期时间(s)  之后每2个一组：菜品id 份数
+for i = 2, #ARGV, 2 do
+    local sold = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+    if sold < 0 then
+        redis.call('HSET', KEYS[1], ARGV[i], 0)
+    end
+end
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 1
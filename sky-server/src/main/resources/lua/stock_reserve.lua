@@ -0,0 +1,15 @@
+-- 预占菜品份数，所有菜品都足够时才扣减
+-- KEYS[1] 当日已售hash
+-- ARGV[1] 过期时间(s)  之后每3个一组：菜品id 份数 每日限量
+-- 返回0表示成功，否则为不足的菜品id
+for i = 2, #ARGV, 3 do
+    local sold = tonumber(redis.call('HGET', KEYS[1], ARGV[i]) or '0')
+    if sold + tonumber(ARGV[i + 1]) > tonumber(ARGV[i + 2]) then
+        return tonumber(ARGV[i])
+    end
+end
+for i = 2, #ARGV, 3 do
+    redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 0
@@ -0,0 +1,12 @@
+-- 删除已处理完成的订单；认领后被重新登记为更晚到期时间的订单保留
+-- KEYS[1] 超时有序集合
+-- ARGV[1] 认领到期时间上限(ms)  ARGV[2..] 订单id
+local limit = tonumber(ARGV[1])
+local removed = 0
+for i = 2, #ARGV do
+    local score = redis.call('ZSCORE', KEYS[1], ARGV[i])
+    if score and tonumber(score) <= limit then
+        removed = removed + redis.call('ZREM', KEYS[1], ARGV[i])
+    end
+end
+return removed
@@ -0,0 +1,9 @@
+-- 认领已到期的订单：分值改为认领到期时间，处理成功后由timeout_ack.lua删除；
+-- 节点在处理完成前宕机时，认领到期后订单重新到期，由其他节点取到。多节点同时调用时每个订单只会被一个节点取到
+-- KEYS[1] 超时有序集合
+-- ARGV[1] 当前时间(ms)  ARGV[2] 最多取出的数量  ARGV[3] 认领到期时间(ms)
+local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+for _, id in ipairs(ids) do
+    redis.call('ZADD', KEYS[1], 'XX', ARGV[3], id)
+end
+return ids
@@ -0,0 +1,8 @@
+-- 订单号节点id续约，只延长自己持有的租约
+-- KEYS[1] 节点id的租约
+-- ARGV[1] 本节点标识
+-- ARGV[2] 租期，单位:s
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('EXPIRE', KEYS[1], ARGV[2])
+end
+return 0
@@ -0,0 +1,94 @@
+package com.sky.aop;
+
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.DishFlavor;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 操作日志采集的单次开销，对比原先的Arrays.toString + 完整fastjson序列化
+ * 以/user/dish/list的返回值为样本，gc.alloc.rate.norm即每次请求的分配字节数
+ * 运行：在IDE中执行main，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogCaptureBenchmark {
+
+    @Param({"10", "40"})
+    private int dishes; //分类下的菜品数
+
+    private Object[] args;
+    private Result<List<DishVO>> result;
+
+    @Setup
+    public void setup() {
+        args = new Object[]{1L};
+        List<DishVO> list = new ArrayList<>();
+        for (int i = 0; i < dishes; i++) {
+            List<DishFlavor> flavors = new ArrayList<>();
+            flavors.add(new DishFlavor((long) i * 2, (long) i, "辣度", "[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]"));
+            flavors.add(new DishFlavor((long) i * 2 + 1, (long) i, "忌口", "[\"不要葱\",\"不要蒜\",\"不要香菜\",\"不要辣\"]"));
+            list.add(DishVO.builder().id((long) i).name("菜品" + i).categoryId(1L).price(new BigDecimal("38.00"))
+                    .image("https://sky-take-out.oss-cn-hangzhou.aliyuncs.com/dish-" + i + ".png")
+                    .description("招牌菜品，选用新鲜食材现点现做").status(1)
+                    .flavors(flavors).updateTime(LocalDateTime.now()).build());
+        }
+        result = Result.success(list);
+    }
+
+    /**
+     * 原先的做法：完整生成字符串，写库时再按字段长度截断
+     */
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        String params = Arrays.toString(args);
+        String returnValue = JSONObject.toJSONString(result);
+        bh.consume(params.length() > LogCapture.METHOD_PARAMS_LIMIT ? params.substring(0, LogCapture.METHOD_PARAMS_LIMIT) : params);
+        bh.consume(returnValue.length() > LogCapture.RETURN_VALUE_LIMIT ? returnValue.substring(0, LogCapture.RETURN_VALUE_LIMIT) : returnValue);
+    }
+
+    @Benchmark
+    public void boundedFull(Blackhole bh) {
+        bh.consume(LogCapture.args(args, false, LogCapture.METHOD_PARAMS_LIMIT));
+        bh.consume(LogCapture.value(result, false, LogCapture.RETURN_VALUE_LIMIT));
+    }
+
+    @Benchmark
+    public void shape(Blackhole bh) {
+        bh.consume(LogCapture.args(args, true, LogCapture.METHOD_PARAMS_LIMIT));
+        bh.consume(LogCapture.value(result, true, LogCapture.RETURN_VALUE_LIMIT));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LogCaptureBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
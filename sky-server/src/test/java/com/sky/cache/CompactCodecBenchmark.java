@@ -0,0 +1,112 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.result.Result;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+import com.sky.vo.SetmealVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存L2值的序列化开销：紧凑编码(不压缩/超过1024字节压缩)与原先的jdk序列化
+ * 以/user/dish/list缓存的菜品列表为样本，每种格式的字节数在启动时输出，gc.alloc.rate.norm即每次的分配字节数
+ * 运行：在IDE中执行main，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactCodecBenchmark {
+
+    @Param({"compact", "deflate", "jdk"})
+    private String codec;
+
+    @Param({"10", "40"})
+    private int dishes; //分类下的菜品数
+
+    private RedisSerializer<Object> serializer;
+    private List<DishVO> value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        RedisSerializer<Object> jdk = RedisSerializer.java(getClass().getClassLoader());
+        switch (codec) {
+            case "compact":
+                serializer = new CompactRedisSerializer(codec(0), jdk, true);
+                break;
+            case "deflate":
+                serializer = new CompactRedisSerializer(codec(1024), jdk, true);
+                break;
+            default:
+                serializer = jdk;
+        }
+
+        value = new ArrayList<>();
+        for (int i = 0; i < dishes; i++) {
+            List<DishFlavor> flavors = new ArrayList<>();
+            flavors.add(new DishFlavor((long) i * 2, (long) i, "辣度", "[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]"));
+            flavors.add(new DishFlavor((long) i * 2 + 1, (long) i, "忌口", "[\"不要葱\",\"不要蒜\",\"不要香菜\",\"不要辣\"]"));
+            value.add(DishVO.builder().id((long) i).name("菜品" + i).categoryId(1L).price(new BigDecimal("38.00"))
+                    .image("https://sky-take-out.oss-cn-hangzhou.aliyuncs.com/dish-" + i + ".png")
+                    .description("招牌菜品，选用新鲜食材现点现做").status(1).dailyQuota(0)
+                    .flavors(flavors).updateTime(LocalDateTime.now()).categoryName("热菜").build());
+        }
+        bytes = serializer.serialize(value);
+        if (!value.equals(serializer.deserialize(bytes)))
+            throw new IllegalStateException(codec + "解码结果与原对象不一致");
+        System.out.printf("%n%s, %d dishes: %d bytes%n", codec, dishes, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    //与CacheConfiguration登记的类型及顺序一致
+    private static CompactCodec codec(int compressThreshold) {
+        return new CompactCodec(Arrays.asList(
+                Result.class, DishVO.class, DishFlavor.class, Dish.class, Setmeal.class,
+                SetmealVO.class, SetmealDish.class, DishItemVO.class, Category.class),
+                compressThreshold);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompactCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户端拦截器preHandle的单次开销：每次重新构造解析器验签(原做法)、复用解析器验签、复用解析器 + 已验证令牌缓存
+ * users为轮流发起请求的用户数，10000时缓存仍能全部命中；各线程共用同一个拦截器，与线上一致
+ * 运行：在IDE中执行main，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET_KEY = "itheima-benchmark-secret";
+    private static final String TOKEN_NAME = "authentication";
+
+    @Param({"1", "10000"})
+    private int users;
+
+    private MockHttpServletRequest[] requests;
+    private HandlerMethod handler;
+    private JwtParser parser;
+    private JwtTokenUserInterceptor interceptor;
+
+    @Setup
+    public void setup() throws Exception {
+        requests = new MockHttpServletRequest[users];
+        for (int i = 0; i < users; i++) {
+            Map<String, Object> claims = new HashMap<>();
+            claims.put(JwtClaimsConstant.USER_ID, (long) i + 1);
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/shoppingCart/list");
+            request.addHeader(TOKEN_NAME, JwtUtil.createJWT(SECRET_KEY, TimeUnit.HOURS.toMillis(2), claims));
+            requests[i] = request;
+        }
+        handler = new HandlerMethod(this, JwtVerifyBenchmark.class.getMethod("toString"));
+        parser = JwtUtil.parser(SECRET_KEY);
+
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setUserSecretKey(SECRET_KEY);
+        jwtProperties.setUserTokenName(TOKEN_NAME);
+        interceptor = new JwtTokenUserInterceptor();
+        ReflectionTestUtils.setField(interceptor, "jwtProperties", jwtProperties);
+        interceptor.init();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+        MockHttpServletRequest next(MockHttpServletRequest[] requests) {
+            MockHttpServletRequest request = requests[next];
+            next = next + 1 == requests.length ? 0 : next + 1;
+            return request;
+        }
+    }
+
+    /**
+     * 原先的做法：每次请求构造秘钥和解析器后验签
+     */
+    @Benchmark
+    public Long legacy(Cursor cursor) {
+        String token = cursor.next(requests).getHeader(TOKEN_NAME);
+        Claims claims = JwtUtil.parser(SECRET_KEY).parseClaimsJws(token).getBody();
+        return Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
+    }
+
+    /**
+     * 复用解析器，但每次仍验签和解析
+     */
+    @Benchmark
+    public Long uncached(Cursor cursor) {
+        String token = cursor.next(requests).getHeader(TOKEN_NAME);
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        return Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
+    }
+
+    /**
+     * 当前拦截器：复用解析器并缓存已验证的令牌
+     */
+    @Benchmark
+    public Long cached(Cursor cursor) throws Exception {
+        MockHttpServletRequest request = cursor.next(requests);
+        interceptor.preHandle(request, cursor.response, handler);
+        Long userId = BaseContext.getCurrentId();
+        interceptor.afterCompletion(request, cursor.response, handler, null);
+        return userId;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerifyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.sky.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * listWithFlavor批量加载口味：500个菜品的合成菜单
+ * mapper用动态代理模拟，统计查询次数并校验口味归属
+ */
+public class DishServiceImplTest {
+
+    private static final int DISHES = 500;
+    private static final int FLAVORS_PER_DISH = 2;
+
+    private final AtomicInteger dishQueries = new AtomicInteger();
+    private final AtomicInteger flavorQueries = new AtomicInteger();
+    private DishServiceImpl dishService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        //LambdaQueryWrapper解析列名依赖实体的表信息，正常由mybatis-plus启动时初始化
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Dish.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<Dish> menu = new ArrayList<>(DISHES);
+        for (long id = 1; id <= DISHES; id++)
+            menu.add(Dish.builder().id(id).name("菜品" + id).categoryId(1L).price(new BigDecimal("18.00")).status(1).build());
+
+        DishMapper dishMapper = mapper(DishMapper.class, (method, args) -> {
+            if (!"selectList".equals(method))
+                throw new UnsupportedOperationException(method);
+            dishQueries.incrementAndGet();
+            return menu;
+        });
+        DishFlavorMapper dishFlavorMapper = mapper(DishFlavorMapper.class, (method, args) -> {
+            flavorQueries.incrementAndGet();
+            if ("selectByDishIds".equals(method)) {
+                @SuppressWarnings("unchecked")
+                Collection<Long> dishIds = (Collection<Long>) args[0];
+                List<DishFlavor> flavors = new ArrayList<>();
+                for (Long dishId : dishIds)
+                    flavors.addAll(flavorsOf(dishId));
+                return flavors;
+            }
+            throw new UnsupportedOperationException(method);
+        });
+
+        dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(dishService, "dishFlavorMapper", dishFlavorMapper);
+    }
+
+    @Test
+    void listWithFlavorLoadsAllFlavorsInOneQuery() {
+        Dish query = new Dish();
+        query.setCategoryId(1L);
+        query.setStatus(1);
+
+        List<DishVO> list = dishService.listWithFlavor(query);
+
+        assertEquals(1, dishQueries.get());
+        assertEquals(1, flavorQueries.get(), "口味应一次批量查出");
+        assertEquals(DISHES, list.size());
+        for (DishVO dishVO : list) {
+            assertEquals(FLAVORS_PER_DISH, dishVO.getFlavors().size());
+            assertTrue(dishVO.getFlavors().stream().allMatch(f -> f.getDishId().equals(dishVO.getId())), "口味应归到对应菜品");
+        }
+    }
+
+    private static List<DishFlavor> flavorsOf(Long dishId) {
+        List<DishFlavor> flavors = new ArrayList<>(FLAVORS_PER_DISH);
+        for (int i = 0; i < FLAVORS_PER_DISH; i++)
+            flavors.add(new DishFlavor(dishId * 10 + i, dishId, "口味" + i, "[\"默认\"]"));
+        return flavors;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T mapper(Class<T> type, MapperCall call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(call, args);
+            return call.invoke(method.getName(), args);
+        });
+    }
+
+    private interface MapperCall {
+        Object invoke(String method, Object[] args);
+    }
+}
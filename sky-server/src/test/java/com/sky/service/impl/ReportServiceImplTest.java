@@ -0,0 +1,151 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.ReportMapper;
+import com.sky.properties.ReportProperties;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 运营数据报表的流式导出：订单明细逐行写入SXSSF，内存中只保留固定行数
+ * 用动态代理模拟流式查询，逐条生成订单；每写入一段后GC并记录存活堆大小，存活堆不应随行数增长
+ */
+public class ReportServiceImplTest {
+
+    private static final int ORDERS = 200_000;
+    private static final int SAMPLE_EVERY = 20_000; //每写入这么多行采样一次存活堆
+    private static final long HEAP_BUDGET_BYTES = 32L * 1024 * 1024; //导出期间存活堆相对开始时的增长上限；XSSF全量保存20万行需要数百MB
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final AtomicLong written = new AtomicLong();
+    private long baseline;
+    private long peak;
+    private ReportServiceImpl reportService;
+
+    @BeforeEach
+    void setUp() {
+        ReportProperties reportProperties = new ReportProperties();
+        reportProperties.setExportRowWindow(100);
+
+        ReportMapper reportMapper = mapper(ReportMapper.class, (method, args) -> {
+            if ("sumByDate".equals(method))
+                return Collections.emptyList();
+            throw new UnsupportedOperationException(method);
+        });
+        OrderMapper orderMapper = mapper(OrderMapper.class, (method, args) -> {
+            if (!"streamByOrderTime".equals(method))
+                throw new UnsupportedOperationException(method);
+            @SuppressWarnings("unchecked")
+            ResultHandler<Orders> handler = (ResultHandler<Orders>) args[2];
+            stream((LocalDateTime) args[0], handler);
+            return null;
+        });
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "reportProperties", reportProperties);
+        ReflectionTestUtils.setField(reportService, "reportMapper", reportMapper);
+        ReflectionTestUtils.setField(reportService, "orderMapper", orderMapper);
+        reportService.init();
+    }
+
+    @Test
+    void exportKeepsRetainedHeapBounded() throws Exception {
+        AtomicLong bytes = new AtomicLong();
+        baseline = retainedHeap();
+        reportService.exportBusinessData(response(bytes));
+
+        assertEquals(ORDERS, written.get(), "所有订单都应写出");
+        assertTrue(bytes.get() > 0);
+        assertTrue(peak - baseline < HEAP_BUDGET_BYTES, "导出期间存活堆增长超出预算：" + (peak - baseline) / 1024 + " KB");
+    }
+
+    //逐条生成订单交给handler，与MyBatis流式查询一样不保留已处理的对象
+    private void stream(LocalDateTime begin, ResultHandler<Orders> handler) {
+        DefaultResultContext<Orders> context = new DefaultResultContext<>();
+        for (int i = 0; i < ORDERS; i++) {
+            context.nextResultObject(Orders.builder()
+                    .id((long) i)
+                    .number(String.valueOf(1_700_000_000_000L + i))
+                    .status(1 + i % 6)
+                    .userId((long) (i % 5000))
+                    .orderTime(begin.plusSeconds(i * 10L))
+                    .checkoutTime(begin.plusSeconds(i * 10L + 60))
+                    .amount(new BigDecimal("58.50"))
+                    .consignee("压测用户" + i % 100)
+                    .phone("138" + String.format("%08d", i))
+                    .address("杭州市西湖区文三路" + i % 500 + "号")
+                    .remark(i % 3 == 0 ? "少放辣" : null)
+                    .build());
+            handler.handleResult(context);
+            if (written.incrementAndGet() % SAMPLE_EVERY == 0)
+                peak = Math.max(peak, retainedHeap());
+        }
+    }
+
+    private long retainedHeap() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    //toString、hashCode等Object方法按代理对象自身处理，ReflectionTestUtils注入时会调用
+    @SuppressWarnings("unchecked")
+    private static <T> T mapper(Class<T> type, MapperCall call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(call, args);
+            return call.invoke(method.getName(), args);
+        });
+    }
+
+    private interface MapperCall {
+        Object invoke(String method, Object[] args);
+    }
+
+    //只统计写出的字节数，不保存内容
+    private static HttpServletResponse response(AtomicLong bytes) {
+        ServletOutputStream output = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes.addAndGet(len);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    if ("getOutputStream".equals(method.getName()))
+                        return output;
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,212 @@
+package com.sky.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import com.sky.context.BaseContext;
+import com.sky.context.RequestContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 数据库购物车的并发加减：64个线程同时操作同一用户的同一商品
+ * 依赖MySQL的on duplicate key update和last_insert_id(expr)，需要已执行sql/shopping_cart_unique.sql的库，
+ * 未指定数据库时跳过：
+ * mvn test -Dtest=ShoppingCartServiceImplTest -Dsky.test.mysql.url=jdbc:mysql://localhost:3306/sky_take_out
+ *          -Dsky.test.mysql.username=root -Dsky.test.mysql.password=...
+ * 测试数据使用随机的用户id和新建的菜品，结束后删除
+ */
+public class ShoppingCartServiceImplTest {
+
+    private static final int THREADS = 64;
+    private static final int OPS_PER_THREAD = 50;
+
+    private static PooledDataSource dataSource;
+    private static ShoppingCartMapper shoppingCartMapper;
+    private static long dishId;
+
+    private ShoppingCartServiceImpl shoppingCartService;
+    private long userId;
+    private ExecutorService executor;
+
+    @BeforeAll
+    static void setUpDatabase() throws Exception {
+        String url = System.getProperty("sky.test.mysql.url");
+        assumeTrue(url != null, "未指定sky.test.mysql.url，跳过数据库并发测试");
+        dataSource = new PooledDataSource("com.mysql.cj.jdbc.Driver", url,
+                System.getProperty("sky.test.mysql.username", "root"), System.getProperty("sky.test.mysql.password", ""));
+        dataSource.setPoolMaximumActiveConnections(THREADS);
+        dataSource.setPoolMaximumIdleConnections(THREADS);
+
+        MybatisConfiguration configuration = new MybatisConfiguration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        String resource = "mapper/ShoppingCartMapper.xml";
+        try (InputStream in = Resources.getResourceAsStream(resource)) {
+            new XMLMapperBuilder(in, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+        //SqlSessionManager线程安全，每次调用使用独立会话并提交，与Spring中mapper的用法一致
+        shoppingCartMapper = SqlSessionManager.newInstance(new MybatisSqlSessionFactoryBuilder().build(configuration))
+                .getMapper(ShoppingCartMapper.class);
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "insert into dish (name, category_id, price, image, description, status, create_time, update_time) " +
+                             "values (?, 1, 12.50, '', '购物车并发测试', 1, now(), now())", Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, "购物车并发测试-" + System.nanoTime());
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                keys.next();
+                dishId = keys.getLong(1);
+            }
+        }
+    }
+
+    @AfterAll
+    static void tearDownDatabase() throws Exception {
+        if (dataSource == null)
+            return;
+        execute("delete from dish where id = ?", dishId);
+        dataSource.forceCloseAll();
+    }
+
+    @BeforeEach
+    void setUp() {
+        shoppingCartService = new ShoppingCartServiceImpl();
+        ReflectionTestUtils.setField(shoppingCartService, "shoppingCartMapper", shoppingCartMapper);
+        userId = 9_000_000_000L + ThreadLocalRandom.current().nextInt(1_000_000);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        execute("delete from shopping_cart where user_id = ?", userId);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        race(() -> {
+            for (int i = 0; i < OPS_PER_THREAD; i++)
+                shoppingCartService.addShoppingCart(item());
+            return null;
+        });
+
+        List<ShoppingCart> cart = shoppingCartService.listByUserId(userId);
+        assertEquals(1, cart.size(), "同一商品只能有一行");
+        assertEquals(THREADS * OPS_PER_THREAD, cart.get(0).getNumber().intValue());
+    }
+
+    @Test
+    void concurrentSubsNeverGoNegative() throws Exception {
+        int initial = THREADS * OPS_PER_THREAD / 2;
+        asUser(() -> {
+            for (int i = 0; i < initial; i++)
+                shoppingCartService.addShoppingCart(item());
+            return null;
+        });
+
+        //减少的次数是已有数量的两倍，多出的减少应不生效
+        race(() -> {
+            for (int i = 0; i < OPS_PER_THREAD; i++)
+                shoppingCartService.subShoppingCart(item());
+            return null;
+        });
+
+        assertTrue(shoppingCartService.listByUserId(userId).isEmpty(), "减到0后应删除，不能出现0或负数");
+    }
+
+    @Test
+    void interleavedAddAndSubLeaveNoEmptyRow() throws Exception {
+        //每个线程先加后减，减到0与其他线程加回同时发生时，不能误删有数量的行，也不能留下数量为0的行
+        race(() -> {
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                shoppingCartService.addShoppingCart(item());
+                shoppingCartService.subShoppingCart(item());
+            }
+            return null;
+        });
+
+        assertTrue(shoppingCartService.listByUserId(userId).isEmpty());
+
+        //再各加一次，数量应准确
+        race(() -> {
+            shoppingCartService.addShoppingCart(item());
+            return null;
+        });
+        List<ShoppingCart> cart = shoppingCartService.listByUserId(userId);
+        assertEquals(1, cart.size());
+        assertEquals(THREADS, cart.get(0).getNumber().intValue());
+    }
+
+    //所有线程就绪后同时开始，以当前用户身份执行
+    private void race(Callable<Void> task) throws Exception {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> asUser(() -> {
+                ready.countDown();
+                start.await();
+                return task.call();
+            })));
+        }
+        assertTrue(ready.await(10, TimeUnit.SECONDS));
+        start.countDown();
+        for (Future<Void> future : futures)
+            future.get(60, TimeUnit.SECONDS);
+    }
+
+    //以当前用户身份在本线程执行
+    private Void asUser(Callable<Void> task) throws Exception {
+        try (RequestContext.Scope ignored = RequestContext.attach(RequestContext.create(null, null))) {
+            BaseContext.setCurrentId(userId);
+            return task.call();
+        }
+    }
+
+    private static ShoppingCartDTO item() {
+        ShoppingCartDTO shoppingCartDTO = new ShoppingCartDTO();
+        shoppingCartDTO.setDishId(dishId);
+        shoppingCartDTO.setDishFlavor("微辣");
+        return shoppingCartDTO;
+    }
+
+    private static void execute(String sql, long id) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sky.stock;
+
+import com.sky.properties.StockProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 菜品限量抢购：10000个用户同时抢100份，统计单节点计数器完成一轮抢购的耗时
+ * stripes=1即所有线程CAS同一个计数；每轮结束校验恰好卖出100份，超卖或少卖时直接失败
+ * 运行：在IDE中执行main，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+public class StockContentionBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int PORTIONS = 100;
+    private static final int THREADS = 64; //同时发起预占的线程数，相当于下单接口的并发请求数
+    private static final Long DISH_ID = 1L;
+
+    @Param({"1", "8", "32"})
+    private int stripes;
+
+    private final Map<Long, Integer> quotas = Collections.singletonMap(DISH_ID, PORTIONS);
+    private final Map<Long, Integer> demand = Collections.singletonMap(DISH_ID, 1);
+    private final LocalDate today = LocalDate.now();
+    private ExecutorService executor;
+    private LocalStockCounter counter;
+
+    @Setup(Level.Trial)
+    public void start() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    //每轮使用新的计数器，从100份开始抢
+    @Setup(Level.Invocation)
+    public void reset() {
+        StockProperties stockProperties = new StockProperties();
+        stockProperties.setStripes(stripes);
+        counter = new LocalStockCounter();
+        ReflectionTestUtils.setField(counter, "stockProperties", stockProperties);
+    }
+
+    @Benchmark
+    public long race() throws InterruptedException {
+        return race(executor, counter, today, demand, quotas);
+    }
+
+    //USERS个用户各预占1份，同时开始，全部返回后校验卖出份数
+    static long race(ExecutorService executor, StockCounter counter, LocalDate date,
+                     Map<Long, Integer> demand, Map<Long, Integer> quotas) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(USERS);
+        LongAdder succeeded = new LongAdder();
+        for (int i = 0; i < USERS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    if (counter.reserve(date, demand, quotas))
+                        succeeded.increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+
+        long sold = counter.sold(date).getOrDefault(DISH_ID, 0);
+        if (succeeded.sum() != PORTIONS || sold != PORTIONS)
+            throw new IllegalStateException("应恰好卖出" + PORTIONS + "份，实际预占成功" + succeeded.sum() + "份，计数" + sold + "份");
+        return succeeded.sum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StockContentionBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
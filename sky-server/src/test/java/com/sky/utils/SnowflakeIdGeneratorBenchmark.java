@@ -0,0 +1,81 @@
+package com.sky.utils;
+
+import com.sky.order.WorkerIdLease;
+import com.sky.properties.OrderProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单号生成的吞吐：原先的毫秒时间戳字符串、共享的生成器、下单实际调用的WorkerIdLease(配置节点id，不访问redis)
+ * 各线程共用同一个生成器，与线上一致；序列号用完时沿用逻辑时间，吞吐不受每毫秒4096个的限制
+ * 运行：在IDE中执行main，或 mvn test-compile 后以测试classpath运行本类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+    private WorkerIdLease lease;
+
+    @Setup
+    public void setup() {
+        generator = new SnowflakeIdGenerator(7);
+
+        OrderProperties orderProperties = new OrderProperties();
+        orderProperties.setWorkerId(7);
+        lease = new WorkerIdLease();
+        ReflectionTestUtils.setField(lease, "orderProperties", orderProperties);
+        lease.init();
+    }
+
+    /**
+     * 原先的做法：毫秒时间戳，同一毫秒内重复
+     */
+    @Benchmark
+    public String legacy() {
+        return String.valueOf(System.currentTimeMillis());
+    }
+
+    /**
+     * 共享生成器，CAS更新时间戳和序列号
+     */
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    /**
+     * 下单时的调用路径：检查租约后生成，订单号以字符串保存
+     */
+    @Benchmark
+    public String orderNumber() {
+        return String.valueOf(lease.nextId());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnowflakeIdGeneratorBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
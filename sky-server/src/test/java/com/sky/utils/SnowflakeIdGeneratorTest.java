@@ -0,0 +1,145 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 订单号生成器：多线程下不重复、同一线程内严格递增，时钟回拨和同一毫秒序列号用完时仍然递增
+ */
+public class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 50_000;
+    private static final long WORKER_ID = 7;
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasing() throws Exception {
+        long[][] ids = generate(new SnowflakeIdGenerator(WORKER_ID));
+        assertUniqueAndIncreasing(ids);
+    }
+
+    @Test
+    void concurrentIdsSurviveClockRollback() throws Exception {
+        //时钟随机回拨最多5秒，模拟NTP校时
+        long base = System.currentTimeMillis();
+        AtomicLong calls = new AtomicLong();
+        LongSupplier clock = () -> {
+            long n = calls.incrementAndGet();
+            return n % 1000 == 0 ? base + n / 100 - ThreadLocalRandom.current().nextInt(5000) : base + n / 100;
+        };
+        long[][] ids = generate(new SnowflakeIdGenerator(WORKER_ID, clock));
+        assertUniqueAndIncreasing(ids);
+    }
+
+    @Test
+    void clockRollbackKeepsLogicalTime() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(WORKER_ID, now::get);
+
+        long before = generator.nextId();
+        now.addAndGet(-5000);//回拨5秒
+        long last = before;
+        for (int i = 0; i < 1000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last, "时钟回拨后id仍应递增");
+            assertTrue(SnowflakeIdGenerator.timestampOf(id) >= SnowflakeIdGenerator.timestampOf(before), "回拨期间沿用逻辑时间");
+            assertEquals(WORKER_ID, workerIdOf(id));
+            last = id;
+        }
+
+        //时钟追上逻辑时间后恢复使用真实时间
+        now.addAndGet(10_000);
+        long id = generator.nextId();
+        assertTrue(id > last);
+        assertEquals(now.get(), SnowflakeIdGenerator.timestampOf(id));
+    }
+
+    @Test
+    void sequenceOverflowCarriesIntoNextMillisecond() {
+        long frozen = System.currentTimeMillis();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(WORKER_ID, () -> frozen);
+
+        long last = generator.nextId();
+        for (int i = 1; i < 3 * 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+        //同一毫秒生成了3*4096个，逻辑时间前进2毫秒
+        assertEquals(frozen + 2, SnowflakeIdGenerator.timestampOf(last));
+    }
+
+    @Test
+    void differentWorkersNeverCollide() {
+        long frozen = System.currentTimeMillis();
+        SnowflakeIdGenerator a = new SnowflakeIdGenerator(1, () -> frozen);
+        SnowflakeIdGenerator b = new SnowflakeIdGenerator(2, () -> frozen);
+        long[] ids = new long[20_000];
+        for (int i = 0; i < ids.length; i += 2) {
+            ids[i] = a.nextId();
+            ids[i + 1] = b.nextId();
+        }
+        Arrays.sort(ids);
+        for (int i = 1; i < ids.length; i++)
+            assertTrue(ids[i] != ids[i - 1], "不同节点的id不能重复");
+    }
+
+    //各线程同时开始生成，返回每个线程按生成顺序得到的id
+    private static long[][] generate(SnowflakeIdGenerator generator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++)
+                        ids[i] = generator.nextId();
+                    return ids;
+                }));
+            }
+            start.countDown();
+            long[][] result = new long[THREADS][];
+            for (int t = 0; t < THREADS; t++)
+                result[t] = futures.get(t).get(60, TimeUnit.SECONDS);
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertUniqueAndIncreasing(long[][] ids) {
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        int n = 0;
+        for (long[] perThread : ids) {
+            for (int i = 0; i < perThread.length; i++) {
+                if (i > 0)
+                    assertTrue(perThread[i] > perThread[i - 1], "同一线程内id应严格递增");
+                assertEquals(WORKER_ID, workerIdOf(perThread[i]));
+                all[n++] = perThread[i];
+            }
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++)
+            assertTrue(all[i] != all[i - 1], "id重复：" + all[i]);
+    }
+
+    private static long workerIdOf(long id) {
+        return (id >>> 12) & SnowflakeIdGenerator.MAX_WORKER_ID;
+    }
+}
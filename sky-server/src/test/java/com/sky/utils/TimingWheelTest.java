@@ -0,0 +1,143 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮：跨层重新分配、取消后重新添加、不提前到期、超出范围的到期时间按最大范围放置
+ */
+public class TimingWheelTest {
+
+    private static final long START = 1_700_000_000_123L; //不与刻度对齐的起始时间
+
+    @Test
+    void timersCascadeAcrossLevels() {
+        TimingWheel wheel = new TimingWheel(1, START);
+        //每层64个槽，覆盖第0~4层及各层边界
+        long[] deltas = {0, 1, 63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 262_145,
+                16_777_215, 16_777_216, 16_777_217, 20_000_000};
+        for (int i = 0; i < deltas.length; i++)
+            wheel.add(i, START + deltas[i]);
+
+        long now = START;
+        for (int i = 0; i < deltas.length; i++) {
+            long deadline = START + deltas[i];
+            if (deadline - 1 >= now) {
+                assertTrue(wheel.advance(deadline - 1).isEmpty(), "到期前不应触发：" + deltas[i]);
+                now = deadline - 1;
+            }
+            assertEquals(Collections.singletonList((long) i), wheel.advance(deadline), "应在到期时触发：" + deltas[i]);
+            now = deadline;
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTimerDoesNotFireAndCanBeAddedAgain() {
+        TimingWheel wheel = new TimingWheel(10, START);
+        wheel.add(1, START + 5_000);
+        wheel.add(2, START + 5_000);
+
+        assertTrue(wheel.cancel(1));
+        assertFalse(wheel.cancel(1), "重复取消应返回false");
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.singletonList(2L), wheel.advance(START + 10_000));
+        assertFalse(wheel.cancel(2), "已到期的定时器不能再取消");
+
+        //取消后重新添加，只按新的到期时间触发一次
+        wheel.add(1, START + 20_000);
+        //到期时间按刻度向上取整，START不与刻度对齐，最迟在下一个刻度触发
+        assertTrue(wheel.advance(START + 19_990).isEmpty());
+        assertEquals(Collections.singletonList(1L), wheel.advance(START + 20_010));
+        assertTrue(wheel.advance(START + 100_000).isEmpty());
+
+        //已存在的键重新添加时替换原到期时间，提前和推后都按新时间触发
+        wheel.add(3, START + 300_000);
+        wheel.add(3, START + 150_000);
+        wheel.add(4, START + 120_000);
+        wheel.add(4, START + 400_000);
+        assertEquals(Collections.singletonList(3L), wheel.advance(START + 200_000));
+        assertTrue(wheel.advance(START + 399_990).isEmpty());
+        assertEquals(Collections.singletonList(4L), wheel.advance(START + 400_010));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timersNeverFireEarly() {
+        long tickMs = 10;
+        TimingWheel wheel = new TimingWheel(tickMs, START);
+        Random random = new Random(42);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long key = 0; key < 100_000; key++) {
+            //包含已过期的到期时间
+            long deadline = START - 1_000 + (long) (random.nextDouble() * 3_000_000);
+            deadlines.put(key, deadline);
+            wheel.add(key, deadline);
+        }
+
+        Set<Long> fired = new HashSet<>();
+        long previous = START;
+        long now = START;
+        while (fired.size() < deadlines.size()) {
+            now += 1 + random.nextInt(5_000);
+            for (long key : wheel.advance(now)) {
+                long deadline = deadlines.get(key);
+                assertTrue(deadline <= now, "提前触发：到期" + deadline + "，当前" + now);
+                //到期时间按刻度向上取整，上一次推进时还未到取整后的时间，说明没有被延后到下一次
+                long due = (deadline + tickMs - 1) / tickMs * tickMs;
+                assertTrue(due > previous || deadline < START, "延迟触发：到期" + deadline + "，上次推进" + previous);
+                assertTrue(fired.add(key), "重复触发：" + key);
+            }
+            previous = now;
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void millionPendingTimers() {
+        TimingWheel wheel = new TimingWheel(100, START);
+        Random random = new Random(7);
+        int timers = 1_000_000;
+        for (long key = 0; key < timers; key++)
+            wheel.add(key, START + random.nextInt(15 * 60 * 1000));
+        assertEquals(timers, wheel.size());
+
+        for (long key = 0; key < timers; key += 2)
+            assertTrue(wheel.cancel(key));
+        assertEquals(timers / 2, wheel.size());
+
+        List<Long> fired = new ArrayList<>(wheel.advance(START + 15 * 60 * 1000 + 100));
+        assertEquals(timers / 2, fired.size());
+        assertTrue(fired.stream().allMatch(key -> key % 2 == 1), "已取消的定时器不应触发");
+        assertEquals(timers / 2, new HashSet<>(fired).size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlineBeyondRangeIsClampedNotLostOrEarly() {
+        TimingWheel wheel = new TimingWheel(1, START);
+        //超出6层范围(2^36个刻度)的到期时间按最大范围放置，推进期间不触发
+        wheel.add(1, Long.MAX_VALUE / 2);
+        wheel.add(2, START + (1L << 36) * 4);
+        wheel.add(3, START + 17_000_000);
+
+        assertEquals(Collections.singletonList(3L), wheel.advance(START + 17_000_000));
+        assertTrue(wheel.advance(START + 20_000_000).isEmpty());
+        assertEquals(2, wheel.size());
+        assertTrue(wheel.cancel(1));
+        assertTrue(wheel.cancel(2));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,62 @@
+package com.sky.stub;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟接口耗时的分布
+ * 格式：fixed:50、uniform:20-80、exp:40(均值)、lognormal:40:0.5(中位数:sigma)，单位ms
+ */
+public abstract class LatencyModel {
+
+    /**
+     * 取一次耗时
+     * @return 毫秒
+     */
+    public abstract long next();
+
+    public static LatencyModel parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        String type = parts[0].toLowerCase();
+        switch (type) {
+            case "fixed": {
+                long ms = Long.parseLong(parts[1]);
+                return of(spec, () -> ms);
+            }
+            case "uniform": {
+                String[] range = parts[1].split("-");
+                long min = Long.parseLong(range[0]);
+                long max = Long.parseLong(range[1]);
+                return of(spec, () -> ThreadLocalRandom.current().nextLong(min, max + 1));
+            }
+            case "exp": {
+                double mean = Double.parseDouble(parts[1]);
+                return of(spec, () -> Math.round(-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble())));
+            }
+            case "lognormal": {
+                double mu = Math.log(Double.parseDouble(parts[1]));
+                double sigma = Double.parseDouble(parts[2]);
+                return of(spec, () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian())));
+            }
+            default:
+                throw new IllegalArgumentException("未知的耗时分布：" + spec);
+        }
+    }
+
+    private static LatencyModel of(String spec, Sampler sampler) {
+        return new LatencyModel() {
+            @Override
+            public long next() {
+                return Math.max(0, sampler.sample());
+            }
+
+            @Override
+            public String toString() {
+                return spec;
+            }
+        };
+    }
+
+    private interface Sampler {
+        long sample();
+    }
+}
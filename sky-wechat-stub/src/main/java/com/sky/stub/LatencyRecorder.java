@@ -0,0 +1,82 @@
+package com.sky.stub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时统计，按对数分桶近似计算分位数，记录无锁
+ */
+public class LatencyRecorder {
+
+    private static final int SUB_BUCKETS = 16; //每个2的幂区间再等分的份数，分位数误差约6%
+    private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * 记录一次耗时
+     * @param ms
+     */
+    public void record(long ms) {
+        buckets.incrementAndGet(bucketOf(Math.max(0, ms)));
+        count.increment();
+        sum.add(ms);
+    }
+
+    /**
+     * 统计结果
+     * @return
+     */
+    public Map<String, Object> snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", total);
+        stats.put("avg", total == 0 ? 0 : sum.sum() / Math.max(1, count.sum()));
+        stats.put("p50", percentile(copy, total, 0.50));
+        stats.put("p90", percentile(copy, total, 0.90));
+        stats.put("p99", percentile(copy, total, 0.99));
+        stats.put("p999", percentile(copy, total, 0.999));
+        stats.put("max", percentile(copy, total, 1.0));
+        return stats;
+    }
+
+    private static long percentile(long[] copy, long total, double quantile) {
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += copy[i];
+            if (seen >= rank)
+                return upperBoundOf(i);
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    //小于SUB_BUCKETS的值各占一个桶，其余按 2的幂区间 * 区间内等分 定位
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - 4; //SUB_BUCKETS = 2^4
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return Math.min(BUCKETS - 1, (shift + 1) * SUB_BUCKETS + sub);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
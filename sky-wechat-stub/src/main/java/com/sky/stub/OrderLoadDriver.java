@@ -0,0 +1,292 @@
+package com.sky.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 下单压测：每个并发用户用独立的code登录(openid由本模拟服务生成)，循环 加购物车 -> 下单，统计下单接口的吞吐和耗时分位数
+ * 对比两种下单方式时，sky-server分别以 sky.order.submit-mode=direct / batch 启动，其余参数保持一致各跑一次
+ *
+ * 指定 --pay=true 时压测 下单 -> 支付 -> 回调 全链路：本进程内启动微信接口模拟服务(参数同WeChatStubServer)，
+ * 每单下单后调用支付接口，模拟服务随后发出支付回调，回调被sky-server成功应答即视为该单完成，
+ * 全链路耗时为 发起下单 到 回调被应答；sky-server的微信接口地址需指向本模拟服务。
+ * 目标2000单/秒时的参数示例(尚无实测结果，并发用户数需按实际下单耗时调整，保证 users >= rate * 平均下单耗时)：
+ * --pay=true --rate=2000 --users=800 --api-v3-key=...
+ *
+ * 参数(--key=value)：
+ * server        sky-server地址，默认 http://localhost:8080
+ * address-book-id  下单使用的地址簿id，需已存在
+ * dish-id       加入购物车的菜品id，需已起售且未设置每日限量
+ * users         并发用户数，默认 64
+ * rate          目标下单速率(单/秒)，0表示不限速，各用户收到应答后立即发起下一单
+ * warmup        预热秒数，期间的请求不计入统计，默认 10
+ * duration      统计秒数，默认 60
+ * label         结果标签，如 direct、batch，便于对比输出
+ * pay           是否压测支付和回调，默认 false
+ */
+@Slf4j
+public class OrderLoadDriver {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final String server;
+    private final long addressBookId;
+    private final long dishId;
+    private final int users;
+    private final int rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final String label;
+    private final WeChatStubServer stub; //pay模式下嵌入的模拟服务
+
+    private final LatencyRecorder submitLatency = new LatencyRecorder();
+    private final LatencyRecorder paymentLatency = new LatencyRecorder();
+    private final LatencyRecorder endToEndLatency = new LatencyRecorder();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder paid = new LongAdder(); //统计期间发起且回调已被应答的订单数
+    private final Map<String, Long> awaitingCallback = new ConcurrentHashMap<>(); //订单号 -> 发起下单时间(nanoTime)
+    private final AtomicLong nextSlot = new AtomicLong(); //限速时下一单的计划发起时间
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    public OrderLoadDriver(Properties properties, WeChatStubServer stub) {
+        this.server = properties.getProperty("server", "http://localhost:8080");
+        this.addressBookId = Long.parseLong(required(properties, "address-book-id"));
+        this.dishId = Long.parseLong(required(properties, "dish-id"));
+        this.users = Integer.parseInt(properties.getProperty("users", "64"));
+        this.rate = Integer.parseInt(properties.getProperty("rate", "0"));
+        this.warmupSeconds = Integer.parseInt(properties.getProperty("warmup", "10"));
+        this.durationSeconds = Integer.parseInt(properties.getProperty("duration", "60"));
+        this.label = properties.getProperty("label", "");
+        this.stub = stub;
+        if (stub != null)
+            stub.callbackSender().setAckListener(this::callbackAcked);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = parse(args);
+        //HttpURLConnection默认每个目标只保留5个空闲连接，按并发用户数放大以复用连接
+        System.setProperty("http.maxConnections", properties.getProperty("users", "64"));
+        WeChatStubServer stub = null;
+        if (Boolean.parseBoolean(properties.getProperty("pay", "false"))) {
+            stub = new WeChatStubServer(StubConfig.load(args));
+            stub.start();
+        }
+        try {
+            Map<String, Object> result = new OrderLoadDriver(properties, stub).run();
+            System.out.println(JSON.toJSONString(result, true));
+        } finally {
+            if (stub != null)
+                stub.stop();
+        }
+    }
+
+    /**
+     * 执行压测，返回统计结果
+     * @return
+     * @throws Exception
+     */
+    public Map<String, Object> run() throws Exception {
+        //先全部登录，登录耗时不计入下单统计
+        List<String> tokens = new ArrayList<>(users);
+        for (int i = 0; i < users; i++)
+            tokens.add(login("load-" + i));
+        log.info("{}个用户已登录，预热{}秒后统计{}秒", users, warmupSeconds, durationSeconds);
+
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        CountDownLatch done = new CountDownLatch(users);
+        nextSlot.set(System.nanoTime());
+        for (String token : tokens) {
+            executor.execute(() -> {
+                try {
+                    loop(token);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        measuring = true;
+        long begin = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        measuring = false;
+        long elapsed = System.nanoTime() - begin;
+        running = false;
+        done.await(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        executor.shutdownNow();
+        if (stub != null) {
+            //等待统计期间支付的订单收到回调，最长为一次读超时
+            long deadline = System.currentTimeMillis() + READ_TIMEOUT_MS;
+            while (!awaitingCallback.isEmpty() && System.currentTimeMillis() < deadline)
+                TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("label", label);
+        result.put("users", users);
+        result.put("targetRate", rate);
+        result.put("submitted", submitted.sum());
+        result.put("failed", failed.sum());
+        result.put("ordersPerSecond", Math.round(submitted.sum() * 1e9 / elapsed));
+        result.put("submitLatencyMs", submitLatency.snapshot());
+        if (stub != null) {
+            result.put("paid", paid.sum());
+            result.put("callbackMissing", awaitingCallback.size());
+            result.put("paymentLatencyMs", paymentLatency.snapshot());
+            result.put("endToEndLatencyMs", endToEndLatency.snapshot());
+            result.put("stub", JSON.toJSON(stub.callbackSender().stats()));
+        }
+        return result;
+    }
+
+    private void loop(String token) {
+        while (running) {
+            pace();
+            try {
+                request("POST", "/user/shoppingCart/add", token, "{\"dishId\":" + dishId + "}");
+                JSONObject submit = new JSONObject();
+                submit.put("addressBookId", addressBookId);
+                submit.put("payMethod", 1);
+                submit.put("deliveryStatus", 1);
+                submit.put("tablewareStatus", 1);
+                submit.put("tablewareNumber", 0);
+                submit.put("packAmount", 1);
+                submit.put("amount", 1);
+
+                boolean measured = measuring;
+                long start = System.nanoTime();
+                JSONObject order = request("POST", "/user/order/submit", token, submit.toJSONString()).getJSONObject("data");
+                if (measured) {
+                    submitLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    submitted.increment();
+                }
+                if (stub != null)
+                    pay(token, order.getString("orderNumber"), start, measured);
+            } catch (Exception e) {
+                if (measuring)
+                    failed.increment();
+                log.debug("下单失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    //支付接口返回后等待模拟服务发出回调；回调可能先于支付接口返回到达，所以在调用前登记
+    private void pay(String token, String orderNumber, long start, boolean measured) throws IOException {
+        if (measured)
+            awaitingCallback.put(orderNumber, start);
+        long payStart = System.nanoTime();
+        try {
+            request("PUT", "/user/order/payment", token, "{\"orderNumber\":\"" + orderNumber + "\",\"payMethod\":1}");
+        } catch (IOException e) {
+            awaitingCallback.remove(orderNumber);
+            throw e;
+        }
+        if (measured)
+            paymentLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - payStart));
+    }
+
+    private void callbackAcked(String orderNumber) {
+        Long start = awaitingCallback.remove(orderNumber);
+        if (start == null)
+            return;
+        endToEndLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        paid.increment();
+    }
+
+    //按目标速率给每单分配发起时间，未到时间则等待；落后时不补发，避免积压后突发
+    private void pace() {
+        if (rate <= 0)
+            return;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndUpdate(next -> Math.max(next, now - interval) + interval);
+        long wait = slot - now;
+        if (wait > 0)
+            LockSupport.parkNanos(wait);
+    }
+
+    private String login(String code) throws IOException {
+        JSONObject data = request("POST", "/user/user/login", null, "{\"code\":\"" + code + "\"}").getJSONObject("data");
+        return data.getString("token");
+    }
+
+    //返回Result，code不为1时按失败抛出
+    private JSONObject request(String method, String path, String token, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestMethod(method);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        if (token != null)
+            connection.setRequestProperty("authentication", token);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        String response = read(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        if (status != 200)
+            throw new IOException(path + " HTTP " + status);
+        JSONObject result = JSON.parseObject(response);
+        if (result.getIntValue("code") != 1)
+            throw new IOException(path + " " + result.getString("msg"));
+        return result;
+    }
+
+    //读完应答体，连接才能放回keep-alive缓存复用
+    private static String read(InputStream input) throws IOException {
+        if (input == null)
+            return "";
+        try (InputStream in = input) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                output.write(buffer, 0, n);
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Properties parse(String[] args) {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("参数格式应为 --key=value：" + arg);
+            int index = arg.indexOf('=');
+            properties.setProperty(arg.substring(2, index), arg.substring(index + 1));
+        }
+        return properties;
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null)
+            throw new IllegalArgumentException("必须指定 --" + key);
+        return value;
+    }
+}
@@ -0,0 +1,237 @@
+package com.sky.stub;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 模拟微信支付成功回调：按APIv3规则用apiV3Key加密通知内容，POST到notify_url
+ * 未成功应答时按递增间隔重试；可按比例重复发送同一通知，检验服务端去重
+ */
+@Slf4j
+public class PayCallbackSender {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final String ASSOCIATED_DATA = "transaction";
+
+    private final StubConfig config;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "stub-callback-scheduler"));
+    private final ExecutorService senders;
+
+    private final LatencyRecorder ackLatency = new LatencyRecorder(); //回调请求到收到应答
+    private final LatencyRecorder endToEndLatency = new LatencyRecorder(); //收到下单请求到回调被成功应答
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private volatile Consumer<String> ackListener; //回调首次被成功应答时通知商户订单号，嵌入压测程序时用于统计全链路耗时
+
+    public PayCallbackSender(StubConfig config) {
+        this.config = config;
+        this.senders = Executors.newFixedThreadPool(config.getCallbackThreads(), r -> daemon(r, "stub-callback-sender"));
+    }
+
+    /**
+     * 下单成功后安排支付回调
+     * @param notifyUrl 下单请求中的notify_url
+     * @param outTradeNo 商户订单号
+     * @param total 金额，单位分
+     * @param openid
+     * @param prepayAt 收到下单请求的时间
+     */
+    public void schedule(String notifyUrl, String outTradeNo, int total, String openid, long prepayAt) {
+        String url = config.getCallbackUrl() != null ? config.getCallbackUrl() : notifyUrl;
+        if (url == null) {
+            log.warn("订单{}没有回调地址，不发送回调", outTradeNo);
+            return;
+        }
+        Notification notification;
+        try {
+            notification = new Notification(url, outTradeNo, encrypt(outTradeNo, total, openid), prepayAt);
+        } catch (Exception e) {
+            log.error("回调内容加密失败：{}", e.getMessage());
+            return;
+        }
+        delay(notification, 0, config.getCallbackDelay().next());
+        if (ThreadLocalRandom.current().nextDouble() < config.getDuplicateCallbackRate()) {
+            duplicated.increment();
+            delay(notification, 0, config.getCallbackDelay().next());
+        }
+    }
+
+    /**
+     * 回调统计
+     * @return
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sent", sent.sum());
+        stats.put("acked", acked.sum());
+        stats.put("failed", failed.sum());
+        stats.put("retried", retried.sum());
+        stats.put("duplicated", duplicated.sum());
+        stats.put("abandoned", abandoned.sum());
+        stats.put("ackLatencyMs", ackLatency.snapshot());
+        stats.put("endToEndLatencyMs", endToEndLatency.snapshot());
+        return stats;
+    }
+
+    /**
+     * 设置回调应答监听
+     * @param ackListener 参数为商户订单号
+     */
+    public void setAckListener(Consumer<String> ackListener) {
+        this.ackListener = ackListener;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private void delay(Notification notification, int attempt, long delayMs) {
+        scheduler.schedule(() -> senders.execute(() -> send(notification, attempt)), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(Notification notification, int attempt) {
+        sent.increment();
+        long begin = System.currentTimeMillis();
+        int status;
+        try {
+            status = post(notification.url, notification.body);
+        } catch (Exception e) {
+            log.debug("回调请求失败：{}", e.getMessage());
+            status = -1;
+        }
+        long end = System.currentTimeMillis();
+        ackLatency.record(end - begin);
+
+        if (status == 200 || status == 204) {
+            acked.increment();
+            if (notification.acked.compareAndSet(false, true)) {//重复发送的通知只统计首次成功应答
+                endToEndLatency.record(end - notification.prepayAt);
+                Consumer<String> listener = ackListener;
+                if (listener != null)
+                    listener.accept(notification.outTradeNo);
+            }
+            return;
+        }
+        failed.increment();
+        if (attempt >= config.getCallbackRetries()) {
+            abandoned.increment();
+            return;
+        }
+        retried.increment();
+        delay(notification, attempt + 1, 1000L << attempt);//1s、2s、4s...
+    }
+
+    private byte[] encrypt(String outTradeNo, int total, String openid) throws Exception {
+        JSONObject transaction = new JSONObject();
+        transaction.put("out_trade_no", outTradeNo);
+        transaction.put("transaction_id", "4200" + System.nanoTime());
+        transaction.put("trade_type", "JSAPI");
+        transaction.put("trade_state", "SUCCESS");
+        transaction.put("success_time", OffsetDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        JSONObject payer = new JSONObject();
+        payer.put("openid", openid);
+        transaction.put("payer", payer);
+        JSONObject amount = new JSONObject();
+        amount.put("total", total);
+        amount.put("payer_total", total);
+        amount.put("currency", "CNY");
+        transaction.put("amount", amount);
+
+        String nonce = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE,
+                new SecretKeySpec(config.getApiV3Key().getBytes(StandardCharsets.UTF_8), "AES"),
+                new GCMParameterSpec(128, nonce.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD(ASSOCIATED_DATA.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(transaction.toJSONString().getBytes(StandardCharsets.UTF_8));
+
+        JSONObject resource = new JSONObject();
+        resource.put("algorithm", "AEAD_AES_256_GCM");
+        resource.put("original_type", "transaction");
+        resource.put("ciphertext", Base64.getEncoder().encodeToString(ciphertext));
+        resource.put("associated_data", ASSOCIATED_DATA);
+        resource.put("nonce", nonce);
+
+        JSONObject notification = new JSONObject();
+        notification.put("id", UUID.randomUUID().toString());
+        notification.put("create_time", OffsetDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        notification.put("resource_type", "encrypt-resource");
+        notification.put("event_type", "TRANSACTION.SUCCESS");
+        notification.put("summary", "支付成功");
+        notification.put("resource", resource);
+        return notification.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int post(String url, byte[] body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body);
+        }
+        int status = connection.getResponseCode();
+        //读完应答体，连接才能回到keep-alive池中复用
+        try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (input != null) {
+                byte[] buffer = new byte[1024];
+                while (input.read(buffer) != -1) {
+                }
+            }
+        }
+        return status;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Notification {
+        private final String url;
+        private final String outTradeNo;
+        private final byte[] body;
+        private final long prepayAt;
+        private final AtomicBoolean acked = new AtomicBoolean();
+
+        Notification(String url, String outTradeNo, byte[] body, long prepayAt) {
+            this.url = url;
+            this.outTradeNo = outTradeNo;
+            this.body = body;
+            this.prepayAt = prepayAt;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sky.stub;
+
+import lombok.Data;
+import lombok.ToString;
+
+import java.util.Properties;
+
+/**
+ * 模拟服务配置，取自启动参数 --key=value，未指定的取系统属性 -Dstub.key=value，再未指定使用默认值
+ */
+@Data
+public class StubConfig {
+
+    private int port = 9090; //监听端口
+    private int threads = 64; //处理请求的线程数
+    private LatencyModel loginLatency = LatencyModel.parse("lognormal:60:0.4"); //登录接口耗时分布
+    private LatencyModel payLatency = LatencyModel.parse("lognormal:120:0.5"); //下单接口耗时分布
+    private LatencyModel refundLatency = LatencyModel.parse("lognormal:150:0.5"); //退款接口耗时分布
+    private LatencyModel callbackDelay = LatencyModel.parse("uniform:500-2000"); //下单成功到发出支付回调的间隔
+    private double errorRate = 0; //接口返回SYSTEM_ERROR的比例
+    private double duplicateCallbackRate = 0.05; //同一支付回调重复发送的比例，用于检验回调去重
+    private int callbackRetries = 3; //回调未成功应答时的重试次数
+    private int callbackThreads = 32; //发送回调的线程数
+    private String callbackUrl; //回调地址，不指定时使用下单请求中的notify_url
+    @ToString.Exclude
+    private String apiV3Key; //与sky.wechat.apiV3Key一致，用于加密回调内容
+    private String platformPrivateKeyPath; //模拟平台私钥，用于对应答签名；与之配对的证书配置为sky.wechat.weChatPayCertFilePath
+    private String platformCertPath; //模拟平台证书，用于取得证书序列号
+
+    public static StubConfig load(String[] args) {
+        Properties properties = new Properties();
+        System.getProperties().forEach((k, v) -> {
+            String key = String.valueOf(k);
+            if (key.startsWith("stub."))
+                properties.setProperty(key.substring("stub.".length()), String.valueOf(v));
+        });
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("参数格式应为 --key=value：" + arg);
+            int index = arg.indexOf('=');
+            properties.setProperty(arg.substring(2, index), arg.substring(index + 1));
+        }
+
+        StubConfig config = new StubConfig();
+        String value;
+        if ((value = properties.getProperty("port")) != null)
+            config.setPort(Integer.parseInt(value));
+        if ((value = properties.getProperty("threads")) != null)
+            config.setThreads(Integer.parseInt(value));
+        if ((value = properties.getProperty("login-latency")) != null)
+            config.setLoginLatency(LatencyModel.parse(value));
+        if ((value = properties.getProperty("pay-latency")) != null)
+            config.setPayLatency(LatencyModel.parse(value));
+        if ((value = properties.getProperty("refund-latency")) != null)
+            config.setRefundLatency(LatencyModel.parse(value));
+        if ((value = properties.getProperty("callback-delay")) != null)
+            config.setCallbackDelay(LatencyModel.parse(value));
+        if ((value = properties.getProperty("error-rate")) != null)
+            config.setErrorRate(Double.parseDouble(value));
+        if ((value = properties.getProperty("duplicate-callback-rate")) != null)
+            config.setDuplicateCallbackRate(Double.parseDouble(value));
+        if ((value = properties.getProperty("callback-retries")) != null)
+            config.setCallbackRetries(Integer.parseInt(value));
+        if ((value = properties.getProperty("callback-threads")) != null)
+            config.setCallbackThreads(Integer.parseInt(value));
+        config.setCallbackUrl(properties.getProperty("callback-url"));
+        config.setApiV3Key(properties.getProperty("api-v3-key"));
+        config.setPlatformPrivateKeyPath(properties.getProperty("platform-private-key-path"));
+        config.setPlatformCertPath(properties.getProperty("platform-cert-path"));
+
+        if (config.getApiV3Key() == null || config.getApiV3Key().length() != 32)
+            throw new IllegalArgumentException("必须指定32位的 --api-v3-key，与sky.wechat.apiV3Key一致");
+        return config;
+    }
+}
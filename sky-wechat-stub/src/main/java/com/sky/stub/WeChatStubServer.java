@@ -0,0 +1,248 @@
+package com.sky.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地模拟微信接口，用于离线压测 下单 -> 支付 -> 回调 全链路
+ * sky-server中将 sky.wechat.api-base-url、sky.wechat.pay-base-url 指向本服务即可
+ *
+ * GET  /sns/jscode2session              小程序登录，按code生成固定的openid
+ * POST /v3/pay/transactions/jsapi       JSAPI下单，返回prepay_id，并在随后向notify_url发送支付成功回调
+ * POST /v3/refund/domestic/refunds      申请退款
+ * GET  /_stub/stats                     各接口请求数、错误数及回调耗时分位数
+ *
+ * 接口耗时由调度线程延后应答模拟，不占用处理线程，少量线程即可支撑数千QPS
+ */
+@Slf4j
+public class WeChatStubServer {
+
+    private final StubConfig config;
+    private final ResponseSigner signer;
+    private final PayCallbackSender callbackSender;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService delayer = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "stub-delayer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+
+    public WeChatStubServer(StubConfig config) throws Exception {
+        this.config = config;
+        this.signer = ResponseSigner.load(config);
+        this.callbackSender = new PayCallbackSender(config);
+        this.workers = Executors.newFixedThreadPool(config.getThreads());
+        this.server = HttpServer.create(new InetSocketAddress(config.getPort()), 1024);
+        this.server.setExecutor(workers);
+
+        endpoints.put("login", new EndpointStats());
+        endpoints.put("pay", new EndpointStats());
+        endpoints.put("refund", new EndpointStats());
+        server.createContext("/sns/jscode2session", this::login);
+        server.createContext("/v3/pay/transactions/jsapi", this::pay);
+        server.createContext("/v3/refund/domestic/refunds", this::refund);
+        server.createContext("/_stub/stats", this::stats);
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubConfig config = StubConfig.load(args);
+        //HttpURLConnection默认每个目标只保留5个空闲连接，回调并发高时需要放大
+        System.setProperty("http.maxConnections", String.valueOf(config.getCallbackThreads()));
+        WeChatStubServer stub = new WeChatStubServer(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::stop, "stub-shutdown"));
+        stub.start();
+    }
+
+    public void start() {
+        server.start();
+        log.info("微信接口模拟服务已启动，端口：{}，应答签名：{}，配置：{}", config.getPort(), signer != null, config);
+        if (signer == null)
+            log.warn("未配置模拟平台私钥和证书，支付接口应答不签名，sky-server的验签将失败");
+    }
+
+    public void stop() {
+        server.stop(0);
+        delayer.shutdownNow();
+        workers.shutdownNow();
+        callbackSender.shutdown();
+    }
+
+    /**
+     * 支付回调发送器，嵌入压测程序时可设置回调应答监听
+     * @return
+     */
+    public PayCallbackSender callbackSender() {
+        return callbackSender;
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        EndpointStats stats = endpoints.get("login");
+        stats.requests.increment();
+        String code = queryParam(exchange.getRequestURI(), "js_code");
+        JSONObject result = new JSONObject();
+        if (code == null) {
+            result.put("errcode", 40029);
+            result.put("errmsg", "invalid code");
+        } else if (injectError()) {
+            stats.errors.increment();
+            result.put("errcode", -1);
+            result.put("errmsg", "system error");
+        } else {
+            //同一code得到同一openid，压测脚本可用code区分用户
+            result.put("openid", "stub-" + UUID.nameUUIDFromBytes(code.getBytes(StandardCharsets.UTF_8)).toString().replace("-", ""));
+            result.put("session_key", UUID.randomUUID().toString().replace("-", ""));
+        }
+        //小程序登录接口出错时HTTP状态仍为200，错误放在errcode中
+        respondLater(exchange, 200, result, false, config.getLoginLatency().next());
+    }
+
+    private void pay(HttpExchange exchange) throws IOException {
+        long receivedAt = System.currentTimeMillis();
+        EndpointStats stats = endpoints.get("pay");
+        stats.requests.increment();
+        JSONObject request = JSON.parseObject(new String(readBody(exchange), StandardCharsets.UTF_8));
+        long latency = config.getPayLatency().next();
+        if (injectError()) {
+            stats.errors.increment();
+            respondLater(exchange, 500, systemError(), true, latency);
+            return;
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("prepay_id", "wx" + UUID.randomUUID().toString().replace("-", ""));
+        respondLater(exchange, 200, result, true, latency);
+
+        JSONObject amount = request.getJSONObject("amount");
+        JSONObject payer = request.getJSONObject("payer");
+        callbackSender.schedule(request.getString("notify_url"),
+                request.getString("out_trade_no"),
+                amount == null ? 0 : amount.getIntValue("total"),
+                payer == null ? null : payer.getString("openid"),
+                receivedAt);
+    }
+
+    private void refund(HttpExchange exchange) throws IOException {
+        EndpointStats stats = endpoints.get("refund");
+        stats.requests.increment();
+        JSONObject request = JSON.parseObject(new String(readBody(exchange), StandardCharsets.UTF_8));
+        long latency = config.getRefundLatency().next();
+        if (injectError()) {
+            stats.errors.increment();
+            respondLater(exchange, 500, systemError(), true, latency);
+            return;
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("refund_id", "5030" + System.nanoTime());
+        result.put("out_refund_no", request.getString("out_refund_no"));
+        result.put("out_trade_no", request.getString("out_trade_no"));
+        result.put("status", "PROCESSING");
+        result.put("amount", request.getJSONObject("amount"));
+        respondLater(exchange, 200, result, true, latency);
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        JSONObject result = new JSONObject(true);
+        endpoints.forEach((name, stats) -> {
+            JSONObject item = new JSONObject(true);
+            item.put("requests", stats.requests.sum());
+            item.put("errors", stats.errors.sum());
+            result.put(name, item);
+        });
+        result.put("callback", callbackSender.stats());
+        respond(exchange, 200, result, false);
+    }
+
+    private void respondLater(HttpExchange exchange, int status, JSONObject body, boolean sign, long delayMs) {
+        if (delayMs <= 0) {
+            respondQuietly(exchange, status, body, sign);
+            return;
+        }
+        delayer.schedule(() -> workers.execute(() -> respondQuietly(exchange, status, body, sign)), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void respondQuietly(HttpExchange exchange, int status, JSONObject body, boolean sign) {
+        try {
+            respond(exchange, status, body, sign);
+        } catch (Exception e) {
+            log.debug("应答失败：{}", e.getMessage());
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, JSONObject body, boolean sign) throws IOException {
+        byte[] bytes = body.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (sign && signer != null) {
+            try {
+                signer.sign(bytes).forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+            } catch (Exception e) {
+                throw new IOException("应答签名失败", e);
+            }
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private boolean injectError() {
+        return config.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getErrorRate();
+    }
+
+    private static JSONObject systemError() {
+        JSONObject result = new JSONObject();
+        result.put("code", "SYSTEM_ERROR");
+        result.put("message", "系统错误");
+        return result;
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = input.read(buffer)) != -1)
+                output.write(buffer, 0, n);
+            return output.toByteArray();
+        }
+    }
+
+    private static String queryParam(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null)
+            return null;
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            if (index > 0 && pair.substring(0, index).equals(name))
+                return pair.substring(index + 1);
+        }
+        return null;
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,11 @@
+-- 菜品每日限量
+-- 下单时在redis或内存中预占，定时把当日已售份数同步到dish_stock_daily
+
+ALTER TABLE dish ADD COLUMN daily_quota INT NOT NULL DEFAULT 0 COMMENT '每日限量份数，0表示不限量';
+
+CREATE TABLE dish_stock_daily (
+    stock_date DATE   NOT NULL COMMENT '日期',
+    dish_id    BIGINT NOT NULL COMMENT '菜品id',
+    sold       INT    NOT NULL DEFAULT 0 COMMENT '已预占份数(未付款和已付款订单，取消后归还)',
+    PRIMARY KEY (stock_date, dish_id)
+) COMMENT '菜品每日已售份数';
@@ -0,0 +1,12 @@
+-- 订单游标分页所需索引
+-- 按(order_time, id)倒序定位，InnoDB二级索引自带主键，联合索引可直接完成seek与排序
+
+-- 管理端全量搜索
+ALTER TABLE orders ADD INDEX idx_order_time_id (order_time, id);
+-- 用户端历史订单
+ALTER TABLE orders ADD INDEX idx_user_order_time_id (user_id, order_time, id);
+-- 管理端按状态搜索
+ALTER TABLE orders ADD INDEX idx_status_order_time_id (status, order_time, id);
+-- 订单号、手机号前缀匹配
+ALTER TABLE orders ADD INDEX idx_number (number);
+ALTER TABLE orders ADD INDEX idx_phone (phone);
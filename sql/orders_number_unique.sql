@@ -0,0 +1,11 @@
+-- 订单号改为全局唯一，getByNumber走唯一索引
+-- 旧订单号为毫秒时间戳，同一毫秒的订单可能重复，建索引前先检查
+SELECT number, COUNT(*) AS cnt FROM orders GROUP BY number HAVING cnt > 1;
+
+-- 如有重复，给除id最小以外的订单号追加id后缀
+UPDATE orders o
+    JOIN (SELECT number, MIN(id) AS keep_id FROM orders GROUP BY number HAVING COUNT(*) > 1) d
+        ON o.number = d.number AND o.id <> d.keep_id
+SET o.number = CONCAT(o.number, '-', o.id);
+
+ALTER TABLE orders DROP INDEX idx_number, ADD UNIQUE KEY uk_number (number);
@@ -0,0 +1,72 @@
+-- 订单分页基准：500万行上对比offset分页(PageHelper)与游标分页
+-- 需要MySQL 8.0.18+(EXPLAIN ANALYZE)，在测试库执行，不要在生产库执行
+-- 结果看每条EXPLAIN ANALYZE第一行的actual time(毫秒)与rows
+
+-- 1. 建表：结构和索引与orders一致(先执行orders_index.sql、orders_number_unique.sql)
+DROP TABLE IF EXISTS orders_bench;
+CREATE TABLE orders_bench LIKE orders;
+
+-- 2. 造数：500万订单，2万个用户，时间分布在最近一年，约30%为已完成
+DROP TABLE IF EXISTS bench_digits;
+CREATE TABLE bench_digits (d INT PRIMARY KEY);
+INSERT INTO bench_digits VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9);
+
+SET @base = NOW() - INTERVAL 365 DAY;
+INSERT INTO orders_bench (number, status, user_id, address_book_id, order_time, checkout_time,
+                          pay_method, pay_status, amount, phone, consignee)
+SELECT CONCAT('B', n),
+       IF(n % 10 < 3, 5, 1 + n % 6),
+       1 + n % 20000,
+       1,
+       @base + INTERVAL (n * 6.3) SECOND,
+       @base + INTERVAL (n * 6.3 + 60) SECOND,
+       1,
+       1,
+       20 + n % 80,
+       CONCAT('138', LPAD(n % 100000000, 8, '0')),
+       '压测'
+FROM (SELECT a.d + b.d * 10 + c.d * 100 + d.d * 1000 + e.d * 10000 + f.d * 100000 + g.d * 1000000 AS n
+      FROM bench_digits a, bench_digits b, bench_digits c, bench_digits d, bench_digits e, bench_digits f, bench_digits g) t
+WHERE n < 5000000;
+ANALYZE TABLE orders_bench;
+
+-- 3. 管理端搜索，每页20条
+-- offset：第1页、第1000页、第10万页，PageHelper每次另有一条count
+EXPLAIN ANALYZE SELECT * FROM orders_bench ORDER BY order_time DESC LIMIT 0, 20;
+EXPLAIN ANALYZE SELECT * FROM orders_bench ORDER BY order_time DESC LIMIT 19980, 20;
+EXPLAIN ANALYZE SELECT * FROM orders_bench ORDER BY order_time DESC LIMIT 1999980, 20;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM orders_bench;
+
+-- 游标：同样位置，先取出上一页最后一行作为游标(对应nextCursor)，多取1条判断hasMore
+SELECT order_time, id INTO @t1000, @id1000 FROM orders_bench ORDER BY order_time DESC, id DESC LIMIT 19979, 1;
+SELECT order_time, id INTO @t100k, @id100k FROM orders_bench ORDER BY order_time DESC, id DESC LIMIT 1999979, 1;
+EXPLAIN ANALYZE SELECT * FROM orders_bench ORDER BY order_time DESC, id DESC LIMIT 21;
+EXPLAIN ANALYZE SELECT * FROM orders_bench
+WHERE (order_time < @t1000 OR (order_time = @t1000 AND id < @id1000))
+ORDER BY order_time DESC, id DESC LIMIT 21;
+EXPLAIN ANALYZE SELECT * FROM orders_bench
+WHERE (order_time < @t100k OR (order_time = @t100k AND id < @id100k))
+ORDER BY order_time DESC, id DESC LIMIT 21;
+
+-- 4. 管理端按状态搜索(已完成)，第1万页
+EXPLAIN ANALYZE SELECT * FROM orders_bench WHERE status = 5 ORDER BY order_time DESC LIMIT 199980, 20;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM orders_bench WHERE status = 5;
+SELECT order_time, id INTO @ts, @ids FROM orders_bench WHERE status = 5 ORDER BY order_time DESC, id DESC LIMIT 199979, 1;
+EXPLAIN ANALYZE SELECT * FROM orders_bench
+WHERE status = 5 AND (order_time < @ts OR (order_time = @ts AND id < @ids))
+ORDER BY order_time DESC, id DESC LIMIT 21;
+
+-- 5. 用户端历史订单(单个用户约250单)，第10页
+EXPLAIN ANALYZE SELECT * FROM orders_bench WHERE user_id = 42 ORDER BY order_time DESC LIMIT 180, 20;
+SELECT order_time, id INTO @tu, @idu FROM orders_bench WHERE user_id = 42 ORDER BY order_time DESC, id DESC LIMIT 179, 1;
+EXPLAIN ANALYZE SELECT * FROM orders_bench
+WHERE user_id = 42 AND (order_time < @tu OR (order_time = @tu AND id < @idu))
+ORDER BY order_time DESC, id DESC LIMIT 21;
+
+-- 6. 订单号查询：原先的两端模糊匹配 vs 游标模式的前缀匹配
+EXPLAIN ANALYZE SELECT * FROM orders_bench WHERE number LIKE CONCAT('%', 'B49999', '%') ORDER BY order_time DESC LIMIT 20;
+EXPLAIN ANALYZE SELECT * FROM orders_bench WHERE number LIKE CONCAT('B49999', '%') ORDER BY order_time DESC, id DESC LIMIT 21;
+
+-- 7. 清理
+DROP TABLE orders_bench;
+DROP TABLE bench_digits;
@@ -0,0 +1,16 @@
+-- 支付对账
+-- 已取消的已付款订单在此登记后自动发起退款：用户取消待接单订单，或订单已取消(如支付超时自动取消)后才收到支付成功通知；退款失败的记录需人工处理
+
+CREATE TABLE pay_reconciliation (
+    id             BIGINT       NOT NULL AUTO_INCREMENT,
+    order_number   VARCHAR(50)  NOT NULL COMMENT '商户订单号',
+    transaction_id VARCHAR(64)  DEFAULT NULL COMMENT '微信支付交易号',
+    order_status   INT          DEFAULT NULL COMMENT '收到通知时的订单状态',
+    reason         VARCHAR(255) DEFAULT NULL COMMENT '登记原因',
+    status         INT          NOT NULL DEFAULT 0 COMMENT '处理状态 0待退款 1已发起退款 2退款失败待人工处理',
+    remark         VARCHAR(255) DEFAULT NULL COMMENT '处理说明',
+    create_time    DATETIME     DEFAULT NULL,
+    update_time    DATETIME     DEFAULT NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_order_number (order_number)
+) COMMENT '支付对账';
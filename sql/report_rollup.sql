@@ -0,0 +1,24 @@
+-- 报表预聚合表
+-- 订单、用户变化时按小时累加增量，报表按天汇总，查询耗时只与天数相关
+
+-- 每小时汇总，日期+小时按订单下单时间/用户注册时间归属
+CREATE TABLE report_hourly (
+    report_date       DATE           NOT NULL COMMENT '日期',
+    report_hour       TINYINT        NOT NULL COMMENT '小时 0-23',
+    turnover          DECIMAL(12, 2) NOT NULL DEFAULT 0 COMMENT '营业额(已完成订单金额)',
+    order_count       INT            NOT NULL DEFAULT 0 COMMENT '订单数',
+    valid_order_count INT            NOT NULL DEFAULT 0 COMMENT '有效订单数(已完成)',
+    new_user_count    INT            NOT NULL DEFAULT 0 COMMENT '新增用户数',
+    PRIMARY KEY (report_date, report_hour)
+) COMMENT '报表小时汇总';
+
+-- 每日各商品销量(已完成订单)
+CREATE TABLE report_dish_daily (
+    report_date DATE        NOT NULL COMMENT '日期',
+    name        VARCHAR(32) NOT NULL COMMENT '商品名称',
+    number      INT         NOT NULL DEFAULT 0 COMMENT '销量',
+    PRIMARY KEY (report_date, name)
+) COMMENT '报表商品日销量';
+
+-- 重建某日汇总时按注册时间扫描用户
+ALTER TABLE user ADD INDEX idx_create_time (create_time);
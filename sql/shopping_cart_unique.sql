@@ -0,0 +1,18 @@
+-- 购物车同一用户同一商品只保留一行，支持 insert ... on duplicate key update
+-- dish_id、setmeal_id、dish_flavor可能为null，不能直接建唯一索引，用生成列归一化
+ALTER TABLE shopping_cart
+    ADD COLUMN item_key varchar(100)
+        GENERATED ALWAYS AS (concat_ws(':', ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, ''))) STORED;
+
+-- 合并历史重复数据：数量累加到id最小的一行，删除其余行
+UPDATE shopping_cart sc
+    JOIN (SELECT MIN(id) AS keep_id, SUM(number) AS total
+          FROM shopping_cart GROUP BY user_id, item_key HAVING COUNT(*) > 1) d ON sc.id = d.keep_id
+SET sc.number = d.total;
+
+DELETE sc FROM shopping_cart sc
+    JOIN (SELECT user_id, item_key, MIN(id) AS keep_id
+          FROM shopping_cart GROUP BY user_id, item_key HAVING COUNT(*) > 1) d
+        ON sc.user_id = d.user_id AND sc.item_key = d.item_key AND sc.id <> d.keep_id;
+
+ALTER TABLE shopping_cart ADD UNIQUE KEY uk_user_item (user_id, item_key);